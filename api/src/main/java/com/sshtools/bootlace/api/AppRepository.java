@@ -22,7 +22,9 @@ package com.sshtools.bootlace.api;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 
 public interface AppRepository extends Repository {
 	public static final String ID = "app";
@@ -35,6 +37,58 @@ public interface AppRepository extends Repository {
 		AppRepository build();
 	}
 
+	/**
+	 * Store an artifact as it is read from a stream. If reading the stream fails, nothing
+	 * must be left at the artifact's path, as the stream may fail at its end when what
+	 * was read does not match the published checksum.
+	 * 
+	 * @param gav artifact
+	 * @param in stream
+	 * @return stored path
+	 * @throws IOException on error
+	 */
 	Path store(GAV gav, InputStream in) throws IOException;
+	
+	/**
+	 * Lock an artifact so only one process at a time may download and store it. Once the lock
+	 * is obtained, the caller should check again if the artifact is now present, as another 
+	 * process may have stored it while waiting. By default no locking is done.
+	 * 
+	 * @param gav artifact
+	 * @return lock, closed to release
+	 * @throws IOException on error
+	 */
+	default UncheckedCloseable lock(GAV gav) throws IOException {
+		return UncheckedCloseable.empty();
+	}
+	
+	/**
+	 * Get where a partially downloaded artifact should be written, so that the download may
+	 * be resumed if interrupted. Once complete, {@link #store(GAV, Path)} is used to move it
+	 * into place. By default partial downloads are not supported.
+	 * 
+	 * @param gav artifact
+	 * @return path of partial download
+	 */
+	default Optional<Path> partial(GAV gav) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Store a completely downloaded artifact from the partial download file.
+	 * 
+	 * @param gav artifact
+	 * @param partial partial download file
+	 * @return stored path
+	 * @throws IOException on error
+	 */
+	default Path store(GAV gav, Path partial) throws IOException {
+		try(var in = Files.newInputStream(partial)) {
+			return store(gav, in);
+		}
+		finally {
+			Files.deleteIfExists(partial);
+		}
+	}
 
 }
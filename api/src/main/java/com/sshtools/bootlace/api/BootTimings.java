@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.api;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Time spent in each phase of opening layers and plugins, captured while
+ * the root layer boots (and when any layers are opened later).
+ */
+public interface BootTimings {
+	
+	public enum Phase {
+		OPEN_LAYER, EXPAND, FIND_MODULES, RESOLVE, DEFINE, SORT_PLUGINS, LOAD_PLUGIN, OPEN_PLUGIN, AFTER_OPEN_PLUGIN
+	}
+
+	public record Timing(String layer, Optional<String> plugin, Phase phase, long nanos) {
+		
+		@Override
+		public String toString() {
+			return String.format("%10.3fms  %-18s %s%s", nanos / 1_000_000d, phase, layer, plugin.map(p -> " " + p).orElse(""));
+		}
+	}
+
+	/**
+	 * Get all timings, in the order they were recorded.
+	 * 
+	 * @return timings
+	 */
+	List<Timing> timings();
+
+	/**
+	 * Get all timings, longest first.
+	 * 
+	 * @return sorted timings
+	 */
+	default List<Timing> sorted() {
+		return timings().stream().sorted(Comparator.comparingLong(Timing::nanos).reversed()).toList();
+	}
+
+	/**
+	 * Get total time spent on a layer in a particular phase, across all plugins.
+	 * 
+	 * @param layer layer ID
+	 * @param phase phase
+	 * @return total nanoseconds
+	 */
+	default long total(String layer, Phase phase) {
+		return timings().stream().
+				filter(t -> t.layer().equals(layer) && t.phase() == phase).
+				mapToLong(Timing::nanos).
+				sum();
+	}
+
+	/**
+	 * Get a textual report of all timings, longest first.
+	 * 
+	 * @return report
+	 */
+	default String report() {
+		var bldr = new StringBuilder();
+		sorted().forEach(t -> bldr.append(t).append(System.lineSeparator()));
+		return bldr.toString();
+	}
+}
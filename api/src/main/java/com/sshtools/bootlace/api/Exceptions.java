@@ -20,6 +20,8 @@
  */
 package com.sshtools.bootlace.api;
 
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.Optional;
@@ -67,6 +69,14 @@ public class Exceptions {
 		}
 	}
 	
+	@SuppressWarnings("serial")
+	public final static class ChecksumMismatch extends IOException {
+		
+		public ChecksumMismatch(GAV gav, URI uri, String algorithm, String expected, String actual) {
+			super(MessageFormat.format("The {0} checksum of `{1}` downloaded from `{2}` is `{3}`, but the repository says it should be `{4}`.", algorithm, gav, uri, actual, expected));
+		}
+	}
+	
 	@SuppressWarnings("serial")
 	public final static class NotALayer extends RuntimeException {
 		
@@ -22,8 +22,10 @@ package com.sshtools.bootlace.api;
 
 import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpClient.Builder;
 import java.time.Duration;
@@ -47,6 +49,27 @@ public class Http {
 	
 	public interface HttpClientFactory extends Supplier<HttpClient.Builder> {
 		
+		/**
+		 * Get a client to use for requests to a repository. By default a new client is built
+		 * for every call, implementations may instead keep clients for reuse, so connections
+		 * are shared between requests.
+		 * 
+		 * @param root root of repository
+		 * @return client
+		 */
+		default HttpClient client(URI root) {
+			return get().build();
+		}
+		
+		/**
+		 * Create a request builder with any defaults such as timeouts applied.
+		 * 
+		 * @param uri uri
+		 * @return request builder
+		 */
+		default HttpRequest.Builder request(URI uri) {
+			return HttpRequest.newBuilder(uri);
+		}
 	}
 	
 	public static Optional<Long> contentLength(HttpResponse<?> response) {
@@ -23,7 +23,12 @@ package com.sshtools.bootlace.api;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import com.sshtools.bootlace.api.Http.HttpClientFactory;
 
@@ -41,9 +46,130 @@ public interface RemoteRepository extends Repository {
 		RemoteRepositoryBuilder withReleases(boolean releases);
 
 		RemoteRepositoryBuilder withSnapshots(boolean snapshots);
+
+		/**
+		 * Set how long an artifact that was not found in the repository is remembered as
+		 * missing, before it is looked for again.
+		 * 
+		 * @param updatePolicy update policy
+		 * @return this for chaining
+		 */
+		default RemoteRepositoryBuilder withUpdatePolicy(UpdatePolicy updatePolicy) {
+			return this;
+		}
+	}
+	
+	/**
+	 * How often to look again for an artifact a repository did not have, in the same
+	 * form as Maven's update policy, i.e. <code>always</code>, <code>daily</code>, 
+	 * <code>never</code> or <code>interval:N</code> (minutes).
+	 * 
+	 * @param interval how long a missing artifact is remembered
+	 */
+	public record UpdatePolicy(Duration interval) {
+		public final static UpdatePolicy ALWAYS = new UpdatePolicy(Duration.ZERO);
+		public final static UpdatePolicy DAILY = new UpdatePolicy(Duration.ofDays(1));
+		public final static UpdatePolicy NEVER = new UpdatePolicy(ChronoUnit.FOREVER.getDuration());
+		
+		public static UpdatePolicy parse(String policy) {
+			switch(policy) {
+			case "always":
+				return ALWAYS;
+			case "daily":
+				return DAILY;
+			case "never":
+				return NEVER;
+			default:
+				if(policy.startsWith("interval:")) {
+					return new UpdatePolicy(Duration.ofMinutes(Long.parseLong(policy.substring(9))));
+				}
+				throw new IllegalArgumentException(MessageFormat.format("Unknown update policy `{0}`.", policy));
+			}
+		}
 	}
 
+	/**
+	 * An artifact download, possibly resumed part way through.
+	 * 
+	 * @param in content, starting at offset
+	 * @param uri location content was actually downloaded from
+	 * @param offset offset of first byte of content
+	 * @param length total length of artifact if known
+	 * @param validator <code>ETag</code> or <code>Last-Modified</code> of the artifact if known, needed to resume
+	 */
+	public record Download(InputStream in, URI uri, long offset, Optional<Long> length, Optional<String> validator) {
+	}
+	
+	/**
+	 * A checksum published by a repository for an artifact.
+	 * 
+	 * @param algorithm digest algorithm name, e.g. <code>SHA-1</code> or <code>SHA-256</code>
+	 * @param value hex encoded checksum
+	 */
+	public record Checksum(String algorithm, String value) {
+	}
+	
 	InputStream download(HttpClientFactory httpClient, GAV gav, URI uri, ResolutionResult result,
 			Optional<ResolutionMonitor> monitor) throws IOException;
 
+	/**
+	 * Download an artifact, resuming from an offset if the artifact has not changed since
+	 * the validator was obtained. The returned download may start at zero if resuming 
+	 * is not possible. By default downloads are never resumed.
+	 * 
+	 * @param httpClient client factory
+	 * @param gav artifact
+	 * @param uri uri
+	 * @param result resolution result
+	 * @param monitor monitor
+	 * @param offset offset to resume from
+	 * @param validator validator from the previous attempt
+	 * @return download
+	 * @throws IOException on error
+	 */
+	default Download download(HttpClientFactory httpClient, GAV gav, URI uri, ResolutionResult result,
+			Optional<ResolutionMonitor> monitor, long offset, Optional<String> validator) throws IOException {
+		return new Download(download(httpClient, gav, uri, result, monitor), uri, 0, Optional.empty(), Optional.empty());
+	}
+
+	/**
+	 * Get the timestamped version the repository currently has for an unresolved snapshot,
+	 * e.g. <code>1.0-20240101.120000-3</code> for <code>1.0-SNAPSHOT</code>. This may be
+	 * answered from cached metadata, according to the repository's {@link UpdatePolicy}.
+	 * By default no version is known.
+	 * 
+	 * @param httpClient client factory
+	 * @param gav unresolved snapshot
+	 * @return timestamped version, or empty if unknown or not a snapshot 
+	 * @throws IOException on error
+	 */
+	default Optional<String> snapshotVersion(HttpClientFactory httpClient, GAV gav) throws IOException {
+		return Optional.empty();
+	}
+
+	/**
+	 * Download the POM of an artifact, so its dependencies may be resolved. By default
+	 * no POMs are available.
+	 * 
+	 * @param httpClient client factory
+	 * @param gav artifact
+	 * @return POM content
+	 * @throws IOException on error, or {@link NoSuchFileException} if there is no POM
+	 */
+	default InputStream pom(HttpClientFactory httpClient, GAV gav) throws IOException {
+		throw new NoSuchFileException(gav.toString());
+	}
+
+	/**
+	 * Fetch the checksum the repository publishes for an artifact, so it may be verified
+	 * once downloaded. By default no checksum is available.
+	 * 
+	 * @param httpClient client factory
+	 * @param uri location of artifact
+	 * @return future checksum, empty if none is published, or it could not be fetched
+	 */
+	default CompletableFuture<Optional<Checksum>> checksum(HttpClientFactory httpClient, URI uri) {
+		return CompletableFuture.completedFuture(Optional.empty());
+	}
+
 }
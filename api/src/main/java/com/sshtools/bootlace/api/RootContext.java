@@ -21,7 +21,9 @@
 package com.sshtools.bootlace.api;
 
 import java.net.URL;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface RootContext {
 
@@ -50,4 +52,47 @@ public interface RootContext {
 
 	boolean hasPlugin(String className);
 
+	/**
+	 * Get a future that completes when all layers that are not deferred have been opened.
+	 * By default, this is already complete.
+	 * 
+	 * @return ready future
+	 */
+	default CompletableFuture<RootContext> ready() {
+		return CompletableFuture.completedFuture(this);
+	}
+
+	/**
+	 * Get a future that completes when a particular layer has been opened, or fails if 
+	 * the layer fails to open. If there is no such layer, the future fails with an
+	 * {@link IllegalArgumentException}. By default, the future fails with an 
+	 * {@link UnsupportedOperationException}.
+	 * 
+	 * @param layerId layer ID
+	 * @return ready future
+	 */
+	default CompletableFuture<ChildLayer> ready(String layerId) {
+		return CompletableFuture.failedFuture(new UnsupportedOperationException());
+	}
+
+	/**
+	 * Get a future that completes when all layers, including deferred layers, have been 
+	 * opened (or have failed to open). By default, this is the same as {@link #ready()}.
+	 * 
+	 * @return booted future
+	 */
+	default CompletableFuture<RootContext> booted() {
+		return ready();
+	}
+
+	/**
+	 * Get the time spent in each phase of opening layers and their plugins. By default,
+	 * there are no timings.
+	 * 
+	 * @return timings
+	 */
+	default BootTimings timings() {
+		return List::of;
+	}
+
 }
\ No newline at end of file
@@ -21,11 +21,22 @@
 package com.sshtools.bootlace.api;
 
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -35,6 +46,185 @@ import org.w3c.dom.NodeList;
 
 public class XML {
 	
+	/**
+	 * A lightweight element selected by {@link XML#select(InputStream, String...)}.
+	 *
+	 * @param name local name
+	 * @param text trimmed text directly inside this element
+	 * @param children child elements
+	 */
+	public record Fragment(String name, String text, List<Fragment> children) {
+		
+		/**
+		 * Get the first direct child with a name.
+		 * 
+		 * @param name name
+		 * @return child
+		 */
+		public Optional<Fragment> child(String name) {
+			return children.stream().filter(c -> c.name.equals(name)).findFirst();
+		}
+		
+		/**
+		 * Get all direct children with a name.
+		 * 
+		 * @param name name
+		 * @return children
+		 */
+		public List<Fragment> children(String name) {
+			return children.stream().filter(c -> c.name.equals(name)).toList();
+		}
+		
+		/**
+		 * Get the text of the first direct child with a name, if it has any.
+		 * 
+		 * @param name name
+		 * @return text
+		 */
+		public Optional<String> value(String name) {
+			return child(name).map(Fragment::text).filter(t -> !t.isEmpty());
+		}
+		
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+	
+	private final static class Streaming {
+		private final static XMLInputFactory FACTORY;
+		
+		static {
+			FACTORY = XMLInputFactory.newFactory();
+			FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+		}
+	}
+	
+	private final static class Building {
+		private final String name;
+		private final StringBuilder text = new StringBuilder();
+		private final List<Fragment> children = new ArrayList<>();
+		
+		private Building(String name) {
+			this.name = name;
+		}
+		
+		private Fragment build() {
+			return new Fragment(name, text.toString().trim(), Collections.unmodifiableList(children));
+		}
+	}
+	
+	/**
+	 * Select elements by their path from the document root, e.g. <code>project/version</code>
+	 * or <code>project/dependencies/dependency</code>, without building a DOM. Only selected 
+	 * elements (and their descendants) are kept, and reading stops as soon as the parents 
+	 * of all paths have ended. Names are matched without namespaces.
+	 * 
+	 * @param in stream
+	 * @param paths paths to select
+	 * @return selected elements for each path, in document order
+	 */
+	public final static Map<String, List<Fragment>> select(InputStream in, String... paths) {
+		var selected = new LinkedHashMap<String, List<Fragment>>();
+		var parents = new HashSet<String>();
+		for(var path : paths) {
+			selected.put(path, new ArrayList<>());
+			var idx = path.lastIndexOf('/');
+			if(idx != -1)
+				parents.add(path.substring(0, idx));
+		}
+		var prefixes = prefixes(paths);
+		
+		try {
+			var reader = Streaming.FACTORY.createXMLStreamReader(in);
+			try {
+				var path = new ArrayDeque<String>();
+				var building = new ArrayDeque<Building>();
+				String selecting = null;
+				
+				while(reader.hasNext()) {
+					switch(reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						var name = reader.getLocalName();
+						path.addLast(path.isEmpty() ? name : path.getLast() + "/" + name);
+						var current = path.getLast();
+						if(selecting == null && selected.containsKey(current)) {
+							selecting = current;
+						}
+						if(selecting != null) {
+							building.push(new Building(name));
+						}
+						else if(!prefixes.contains(current)) {
+							skip(reader);
+							path.removeLast();
+						}
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						if(!building.isEmpty()) {
+							building.peek().text.append(reader.getText());
+						}
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						var ended = path.removeLast();
+						if(selecting != null) {
+							var el = building.pop().build();
+							if(building.isEmpty()) {
+								selected.get(selecting).add(el);
+								selecting = null;
+							}
+							else {
+								building.peek().children.add(el);
+							}
+						}
+						else if(parents.remove(ended) && parents.isEmpty()) {
+							return selected;
+						}
+						break;
+					default:
+						break;
+					}
+				}
+				return selected;
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch(XMLStreamException e) {
+			throw new IllegalArgumentException("Failed to parse XML.", e);
+		}
+	}
+	
+	private static Set<String> prefixes(String... paths) {
+		var prefixes = new HashSet<String>();
+		for(var path : paths) {
+			var parts = Arrays.asList(path.split("/"));
+			for(int i = 1 ; i <= parts.size(); i++) {
+				prefixes.add(String.join("/", parts.subList(0, i)));
+			}
+		}
+		return prefixes;
+	}
+	
+	private static void skip(XMLStreamReader reader) throws XMLStreamException {
+		var depth = 1;
+		while(depth > 0 && reader.hasNext()) {
+			switch(reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
 	public final static XML of(InputStream in) {
 		try {
 			var docBuilderFactory = DocumentBuilderFactory.newInstance();
@@ -91,6 +281,11 @@ public class XML {
 		return l;
 	}
 	
+	public String name() {
+		var el = element();
+		return el.getLocalName() == null ? el.getTagName() : el.getLocalName();
+	}
+	
 	@Override
 	public String toString() {
 		return element().getTextContent();
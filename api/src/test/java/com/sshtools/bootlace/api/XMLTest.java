@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.sshtools.bootlace.api.XML.Fragment;
+
+public class XMLTest {
+
+	private final static String POM = """
+			<?xml version="1.0" encoding="UTF-8"?>
+			<project xmlns="http://maven.apache.org/POM/4.0.0">
+				<modelVersion>4.0.0</modelVersion>
+				<artifactId>child</artifactId>
+				<parent>
+					<groupId>com.acme</groupId>
+					<artifactId>parent</artifactId>
+					<version>1.0</version>
+				</parent>
+				<build>
+					<plugins>
+						<plugin>
+							<version>9.9</version>
+						</plugin>
+					</plugins>
+				</build>
+				<dependencies>
+					<dependency>
+						<groupId>com.acme</groupId>
+						<artifactId>one</artifactId>
+						<version>2.0</version>
+					</dependency>
+					<dependency>
+						<groupId>com.acme</groupId>
+						<artifactId>two</artifactId>
+						<version><![CDATA[3.0]]></version>
+					</dependency>
+				</dependencies>
+				<version>1.1</version>
+			</project>
+			""";
+
+	@Test
+	void testSelectsOnlyExactPaths() {
+		var selected = XML.select(in(POM), "project/version", "project/parent/version");
+		assertEquals("1.1", single(selected.get("project/version")).text());
+		assertEquals("1.0", single(selected.get("project/parent/version")).text());
+	}
+
+	@Test
+	void testSelectsRepeatedElementsInOrder() {
+		var deps = XML.select(in(POM), "project/dependencies/dependency").get("project/dependencies/dependency");
+		assertEquals(2, deps.size());
+		assertEquals(Optional.of("one"), deps.get(0).value("artifactId"));
+		assertEquals(Optional.of("2.0"), deps.get(0).value("version"));
+		assertEquals(Optional.of("two"), deps.get(1).value("artifactId"));
+		assertEquals(Optional.of("3.0"), deps.get(1).value("version"));
+	}
+
+	@Test
+	void testMissingPathIsEmpty() {
+		var selected = XML.select(in(POM), "project/packaging");
+		assertTrue(selected.get("project/packaging").isEmpty());
+	}
+
+	@Test
+	void testStopsOnceParentsHaveEnded() {
+		/* Anything after the dependencies element is never read, so may be malformed */
+		var xml = """
+				<project>
+					<dependencies>
+						<dependency><artifactId>one</artifactId></dependency>
+					</dependencies>
+					<broken attr=>
+				""";
+		var deps = XML.select(in(xml), "project/dependencies/dependency").get("project/dependencies/dependency");
+		assertEquals(Optional.of("one"), single(deps).value("artifactId"));
+	}
+
+	@Test
+	void testMalformed() {
+		assertThrows(IllegalArgumentException.class, () -> XML.select(in("<project><version>1"), "project/version"));
+	}
+
+	private static Fragment single(List<Fragment> fragments) {
+		assertEquals(1, fragments.size());
+		return fragments.get(0);
+	}
+
+	private static ByteArrayInputStream in(String xml) {
+		return new ByteArrayInputStream(xml.strip().getBytes(StandardCharsets.UTF_8));
+	}
+}
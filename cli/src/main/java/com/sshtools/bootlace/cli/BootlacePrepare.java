@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.cli;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.platform.Bootlace;
+
+/**
+ * Headless entry point that prepares everything an application needs to boot, so that
+ * the boot itself needs no network access. Typically run while building a container
+ * image, from the directory the application will be booted from.
+ * <p>
+ * The <code>layers.ini</code> is read just as it would be for a boot. The artifacts of
+ * every layer are then resolved and downloaded, and extension archives expanded, without
+ * defining any module layers or instantiating any plugins. Resolution locks and the 
+ * repository index are written to the cache directory, so relative repository and extension
+ * directories, as well as a relative <code>cache-directory</code>, end up in one 
+ * self-contained directory tree.
+ * <pre>
+ * bootlace-prepare [--refresh] [--cache &lt;dir&gt;] [--download-threads &lt;n&gt;] [layers.ini]
+ * </pre>
+ */
+public final class BootlacePrepare {
+	
+	/** Everything was prepared */
+	final static int EXIT_OK = 0;
+	/** Preparation failed, the cause is logged */
+	final static int EXIT_FAILED = 1;
+	/** The arguments were not understood */
+	final static int EXIT_USAGE = 2;
+
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+
+	public static void main(String[] args) {
+		System.exit(new BootlacePrepare().execute(args));
+	}
+
+	/**
+	 * Prepare, logging any failure rather than throwing it.
+	 * 
+	 * @param args arguments
+	 * @return exit status
+	 */
+	int execute(String... args) {
+		try {
+			return run(args);
+		}
+		catch(IllegalArgumentException iae) {
+			LOG.error("{0} {1}", iae.getMessage(), usage());
+			return EXIT_USAGE;
+		}
+		catch(RuntimeException | Error e) {
+			LOG.error("Failed to prepare.", e);
+			return EXIT_FAILED;
+		}
+	}
+
+	int run(String... args) {
+		var rest = new ArrayList<String>();
+		var downloadThreads = 0;
+		
+		for(int i = 0 ; i < args.length; i++) {
+			var arg = args[i];
+			switch(arg) {
+			case "--help":
+				LOG.info(usage());
+				return EXIT_OK;
+			case "--refresh":
+				/* Ignore what is remembered to be missing, and check snapshots again */
+				System.setProperty("bootlace.refresh", "true");
+				break;
+			case "--cache":
+				System.setProperty("bootlace.cache", value(args, ++i, arg));
+				break;
+			case "--download-threads":
+				try {
+					downloadThreads = Integer.parseInt(value(args, ++i, arg));
+				}
+				catch(NumberFormatException nfe) {
+					throw new IllegalArgumentException(MessageFormat.format("`{0}` must be a number.", arg));
+				}
+				break;
+			default:
+				if(arg.startsWith("--"))
+					throw new IllegalArgumentException(MessageFormat.format("Unknown option `{0}`.", arg));
+				rest.add(arg);
+				break;
+			}
+		}
+		
+		var started = System.nanoTime();
+		var bldr = Bootlace.build().
+				fromStandardArguments(rest.toArray(new String[0])).
+				withParallelBoot();
+		if(downloadThreads > 0) {
+			bldr.withDownloadThreads(downloadThreads);
+		}
+		bldr.prepare();
+		
+		LOG.info("Prepared in {0}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		return EXIT_OK;
+	}
+
+	private static String value(String[] args, int index, String option) {
+		if(index >= args.length)
+			throw new IllegalArgumentException(MessageFormat.format("`{0}` requires a value.", option));
+		return args[index];
+	}
+
+	private static String usage() {
+		return "Usage: bootlace-prepare [--refresh] [--cache <dir>] [--download-threads <n>] [layers.ini]";
+	}
+}
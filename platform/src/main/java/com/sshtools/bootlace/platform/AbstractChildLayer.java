@@ -56,6 +56,8 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 			extends AbstractLayerBuilder<B> {
 		protected final Set<String> parents = new LinkedHashSet<>();
 		protected Optional<Access> access = Optional.empty();
+		protected boolean defer;
+		protected int priority;
 
 		public AbstractChildLayerBuilder(String id) {
 			super(id);
@@ -71,9 +73,43 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 		protected B fromComponentSection(Section section) {
 			withParents(section.getAllOr("parent").orElse(new String[0]));
 			section.getOr("access").map(Access::valueOf).ifPresent(this::withAccess);
+			section.getBooleanOr("defer").ifPresent(this::withDefer);
+			section.getIntOr("priority").ifPresent(this::withPriority);
 			return super.fromComponentSection(section);
 		}
 
+		public final B withDefer() {
+			return withDefer(true);
+		}
+
+		/**
+		 * Open this layer in the background once all layers that are not deferred
+		 * have been opened. Any deferred layer that is a parent of a layer that is not
+		 * deferred will be opened with the critical layers anyway.
+		 * 
+		 * @param defer defer
+		 * @return this for chaining
+		 */
+		@SuppressWarnings("unchecked")
+		public final B withDefer(boolean defer) {
+			this.defer = defer;
+			return (B) this;
+		}
+
+		/**
+		 * The order in which deferred layers are opened, higher priority layers
+		 * are opened first. Layers of equal priority are opened in the order they
+		 * are defined.
+		 * 
+		 * @param priority priority
+		 * @return this for chaining
+		 */
+		@SuppressWarnings("unchecked")
+		public final B withPriority(int priority) {
+			this.priority = priority;
+			return (B) this;
+		}
+
 		public B withParents(String... parents) {
 			return withParents(Arrays.asList(parents));
 		}
@@ -88,6 +124,8 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 
 	final Set<String> parents;
 	final Access access;
+	final boolean defer;
+	final int priority;
 
 	private Optional<RootLayer> rootLayer = Optional.empty();
 
@@ -95,6 +133,8 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 		super(layerBuilder);
 		this.access = layerBuilder.access.orElse(Access.PROTECTED);
 		parents = new LinkedHashSet<>(layerBuilder.parents);
+		defer = layerBuilder.defer;
+		priority = layerBuilder.priority;
 	}
 
 	@Override
@@ -143,7 +183,7 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 
 	List<ChildLayer> childLayers() {
 		if(rootLayer != null && this.rootLayer.isPresent()) {
-			return  ((RootLayerImpl)this.rootLayer.get()).layers.values().stream().
+			return  ((RootLayerImpl)this.rootLayer.get()).allLayers().stream().
 					filter(l -> l.parents().contains(id())).
 					toList();
 		}
@@ -163,6 +203,13 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 	public void onAfterOpen() {
 	}
 
+	/**
+	 * Called when the layer has been closed and detached from the root layer, or when
+	 * a definition that was never opened is discarded.
+	 */
+	public void onClosed() {
+	}
+
 	@Override
 	public String toString() {
 		return "AbstractChildLayer [id()=" + id() + ", name()=" + name() + ", appRepositories()=" + appRepositories()
@@ -270,10 +317,10 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
  				return (Optional<REPO>) ((RootLayerImpl)rootLayer.get()).bootstrapRepository();
  			}
  			else if(id.equals(LocalRepository.ID)) {
- 				return (Optional<REPO>) Optional.of(LocalRepositoryImpl.localRepository());
+ 				return (Optional<REPO>) Optional.of(rootLayer.map(r -> ((RootLayerImpl)r).localRepository()).orElseGet(LocalRepositoryImpl::localRepository));
  			}
  			else if(id.equals(AppRepository.ID)) {
- 				return (Optional<REPO>) Optional.of(AppRepositoryImpl.appRepository());
+ 				return (Optional<REPO>) Optional.of(rootLayer.map(r -> ((RootLayerImpl)r).appRepository()).orElseGet(AppRepositoryImpl::appRepository));
  			}
  			else {
  				throw new IllegalArgumentException(MessageFormat.format("No repository def for `{0}`.", id));
@@ -311,13 +358,28 @@ public abstract class AbstractChildLayer extends AbstractLayer implements ChildL
 			rbldr.withReleases(def.snapshots().orElseGet(() -> def.releases().isEmpty()));
 			rbldr.withSnapshots(def.releases().orElseGet(() -> def.snapshots().isEmpty()));
 			rbldr.withId(def.id());
+			def.updatePolicy().ifPresent(rbldr::withUpdatePolicy);
+			if(rbldr instanceof RemoteRepositoryImpl.RemoteRepositoryBuilder ibldr) {
+				rootLayer.map(RootLayerImpl.class::cast).ifPresent(root -> {
+					ibldr.withNegativeCache(root.negativeCache);
+					ibldr.withSnapshotCache(root.snapshotCache);
+				});
+			}
 		}
 		else if(bldr instanceof AppRepositoryBuilder) {
 			if(!def.id().equals(AppRepository.ID)) {
 				throw new IllegalStateException(MessageFormat.format("App repository `{0}` must have id of `{1}`", def.id(), AppRepository.ID));
 			}
+			if(bldr instanceof AppRepositoryImpl.AppRepositoryBuilder ibldr) {
+				rootLayer.map(RootLayerImpl.class::cast).ifPresent(root -> ibldr.withIndex(root.repositoryIndex));
+			}
+		}
+		else if(bldr instanceof LocalRepositoryBuilder) {
+			if(bldr instanceof LocalRepositoryImpl.LocalRepositoryBuilder ibldr) {
+				rootLayer.map(RootLayerImpl.class::cast).ifPresent(root -> ibldr.withIndex(root.repositoryIndex));
+			}
 		}
-		else if(!(bldr instanceof LocalRepositoryBuilder)) {
+		else {
 			throw new UnsupportedOperationException();
 		}
 		
@@ -48,6 +48,7 @@ import com.sshtools.bootlace.api.Logs.BootLog;
 import com.sshtools.bootlace.api.Logs.Log;
 import com.sshtools.bootlace.api.ModuleParameters;
 import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.RemoteRepository.UpdatePolicy;
 import com.sshtools.bootlace.api.Repository;
 import com.sshtools.bootlace.api.ResolutionMonitor;
 import com.sshtools.bootlace.api.RootLayer;
@@ -279,7 +280,8 @@ abstract class AbstractLayer implements Layer {
 					sec.getOr("name").orElseGet(() -> sec.key()), 
 					sec.getOr("root").map(URI::create).orElseThrow(()-> new IllegalArgumentException("No 'root' in repository def section.")),
 					sec.getBooleanOr("releases"), 
-					sec.getBooleanOr("snapshots")
+					sec.getBooleanOr("snapshots"),
+					sec.getOr("update-policy").map(UpdatePolicy::parse)
 			);
 		}
 
@@ -290,7 +290,10 @@ public abstract class AbstractStaticLayer extends AbstractChildLayer implements
 						}
 
 						Files.createDirectories(dir);
+						var evt = new BootlaceEvents.ZipExpand();
+						evt.begin();
 						Zip.unzip(zip, dir);
+						evt.commitIfEnabled(zip, id);
 						
 						if(readIsWritable) {
 							Files.delete(zip);
@@ -371,6 +374,7 @@ public abstract class AbstractStaticLayer extends AbstractChildLayer implements
 				rootLayer.removeLayer(layer.id());
 				extensions.remove(layer.id());
 				((AbstractChildLayer)layer).rootLayer(null);
+				((AbstractChildLayer)layer).onClosed();
 			}
 		}
 	}
@@ -540,8 +544,10 @@ public abstract class AbstractStaticLayer extends AbstractChildLayer implements
 				extensions.put(id, layer);
 				layer.rootLayer(rootLayer);
 				rootLayer.addLayer(id, layer);
-				rootLayer.open(layer, writeDirectory);
-				rootLayer.afterOpen(layer);
+				if(!rootLayer.isLazyPending(layer)) {
+					rootLayer.open(layer, writeDirectory);
+					rootLayer.afterOpen(layer);
+				}
 			}
 			catch(Exception e) {
 				try {
@@ -22,12 +22,24 @@ package com.sshtools.bootlace.platform;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.sshtools.bootlace.api.AppRepository;
 import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.UncheckedCloseable;
 
 public class AppRepositoryImpl extends LocalRepositoryImpl implements AppRepository {
 	
@@ -43,6 +55,8 @@ public class AppRepositoryImpl extends LocalRepositoryImpl implements AppReposit
 		private Path root = Paths.get(AppRepository.ID);
 
 		private String name = "App Repository";
+		
+		private Optional<RepositoryIndex> index = Optional.empty();
 
 		@Override
 		public AppRepositoryBuilder withName(String name) {
@@ -61,14 +75,37 @@ public class AppRepositoryImpl extends LocalRepositoryImpl implements AppReposit
 			return this;
 		}
 
+		/**
+		 * Use a particular repository index, i.e. the one in the root layer's cache 
+		 * directory. If not set, the one in the default cache directory is used.
+		 * 
+		 * @param index index
+		 * @return this for chaining
+		 */
+		AppRepositoryBuilder withIndex(RepositoryIndex index) {
+			this.index = Optional.of(index);
+			return this;
+		}
+
 		@Override
 		public AppRepositoryImpl build() {
 			return new AppRepositoryImpl(this);
 		}
 	}
 
+	/**
+	 * A lock that keeps threads in this JVM apart, counting the threads that are using 
+	 * it so it can be forgotten once none are.
+	 */
+	private final static class ThreadLock {
+		private final ReentrantLock lock = new ReentrantLock();
+		private int users;
+	}
+
+	private final static Map<Path, ThreadLock> threadLocks = new ConcurrentHashMap<>();
+
 	private AppRepositoryImpl(AppRepositoryBuilder builder) {
-		super(builder.root, builder.name, AppRepository.ID);
+		super(builder.root, builder.name, AppRepository.ID, builder.index);
 	}
 
 	@Override
@@ -76,14 +113,111 @@ public class AppRepositoryImpl extends LocalRepositoryImpl implements AppReposit
 		return gav.repositoryOr().isEmpty() || gav.repository().equals(id());
 	}
 
+	@Override
+	public Optional<Path> partial(GAV gav) {
+		var path = resolveGav(gav);
+		return Optional.of(path.resolveSibling(path.getFileName() + ".part"));
+	}
+
+	@Override
+	public UncheckedCloseable lock(GAV gav) throws IOException {
+		var path = resolveGav(gav);
+		var lockFile = path.resolveSibling(path.getFileName() + ".lock");
+		Files.createDirectories(lockFile.getParent());
+		
+		/* File locks are held by the whole JVM, so threads must also be kept apart */
+		var key = lockFile.toAbsolutePath();
+		var threadLock = acquire(key);
+		try {
+			var channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				var fileLock = channel.lock();
+				return UncheckedCloseable.onClose(() -> {
+					try {
+						try {
+							fileLock.release();
+						}
+						finally {
+							channel.close();
+						}
+					}
+					catch(IOException ioe) {
+						throw new UncheckedIOException(ioe);
+					}
+					finally {
+						release(key, threadLock);
+					}
+				});
+			}
+			catch(IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		catch(IOException | RuntimeException e) {
+			release(key, threadLock);
+			throw e;
+		}
+	}
+
+	private static ThreadLock acquire(Path key) {
+		var threadLock = threadLocks.compute(key, (k, v) -> {
+			var tl = v == null ? new ThreadLock() : v;
+			tl.users++;
+			return tl;
+		});
+		threadLock.lock.lock();
+		return threadLock;
+	}
+
+	private static void release(Path key, ThreadLock threadLock) {
+		threadLock.lock.unlock();
+		threadLocks.compute(key, (k, v) -> --v.users == 0 ? null : v);
+	}
+
+	@Override
+	public Path store(GAV gav, Path partial) throws IOException {
+		var path = resolveGav(gav);
+		try(var channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		return moveIntoPlace(partial, path);
+	}
+
 	@Override
 	public Path store(GAV gav, InputStream in) throws IOException {
 		var path = resolveGav(gav);
 		if (!Files.exists(path.getParent()))
 			Files.createDirectories(path.getParent());
-		try (var out = Files.newOutputStream(path)) {
-			in.transferTo(out);
-			return path;
+		
+		/* Never leave a partially written artifact at its final path */
+		var tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (var src = Channels.newChannel(in); var out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				var buf = ByteBuffer.allocateDirect(Checksums.BUFFER_SIZE);
+				while(src.read(buf) != -1) {
+					buf.flip();
+					while(buf.hasRemaining()) {
+						out.write(buf);
+					}
+					buf.clear();
+				}
+				out.force(true);
+			}
+			return moveIntoPlace(tmp, path);
+		}
+		catch(IOException | RuntimeException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+	}
+
+	private static Path moveIntoPlace(Path from, Path to) throws IOException {
+		try {
+			return Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(AtomicMoveNotSupportedException amnse) {
+			return Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 
@@ -25,14 +25,15 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import com.sshtools.bootlace.api.ArtifactRef;
+import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.Logs;
 import com.sshtools.bootlace.api.Logs.BootLog;
 import com.sshtools.bootlace.api.Logs.Log;
-import com.sshtools.bootlace.api.Zip;
 
 public final class Artifact {
 	private final static Log LOG = Logs.of(BootLog.RESOLUTION);
@@ -58,12 +59,7 @@ public final class Artifact {
 		if(pomFile != null && Files.exists(pomFile)) {
 			LOG.info("Artifact from {0}", pomFile);
 			if(pomFile.getFileName().toString().endsWith(".jar")) {
-				try(var in = Zip.find(pomFile, String.format("META-INF/maven/%s/%s/pom.xml", ref.gav().groupId(), ref.gav().artifactId()))) {
-					return Optional.of(new Artifact(ref, POM.of(in)));
-				}
-				catch(IOException ioe) {
-					throw new UncheckedIOException(ioe);
-				}
+				return Optional.of(new Artifact(ref, POM.of(pomFile, ref.gav())));
 			}
 			else {
 				return Optional.of(new Artifact(ref, POM.of(pomFile)));
@@ -90,7 +86,35 @@ public final class Artifact {
 	}
 	
 	public List<ArtifactRef> resolve() {
-		/* TODO resolve ALL actual artifacts ... tough! */
-		throw new UnsupportedOperationException("TODO");
+		return resolve(new DependencyResolver(Artifact::localPom), List.of());
+	}
+	
+	/**
+	 * Resolve the complete runtime closure of this artifact, not including the artifact
+	 * itself.
+	 * 
+	 * @param resolver resolver
+	 * @param pinned artifacts whose versions are already decided
+	 * @return artifacts
+	 */
+	List<ArtifactRef> resolve(DependencyResolver resolver, Collection<GAV> pinned) {
+		try {
+			return resolver.resolve(pom, pinned).stream().map(ArtifactRef::of).toList();
+		}
+		catch(IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+	
+	private static Optional<POM> localPom(GAV gav) throws IOException {
+		var jar = LocalRepositoryImpl.localRepository().resolve(null, gav);
+		if(jar.isPresent()) {
+			var path = Paths.get(jar.get().uri());
+			var pom = path.resolveSibling(gav.artifactId() + "-" + gav.version() + ".pom");
+			if(Files.exists(pom)) {
+				return Optional.of(POM.of(pom));
+			}
+		}
+		return Optional.empty();
 	}
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.sshtools.bootlace.api.BootTimings;
+
+final class BootTimingsImpl implements BootTimings {
+	
+	private final ConcurrentLinkedQueue<Timing> timings = new ConcurrentLinkedQueue<>();
+
+	@Override
+	public List<Timing> timings() {
+		return List.copyOf(timings);
+	}
+
+	long record(String layer, Phase phase, long started) {
+		return record(layer, Optional.empty(), phase, started);
+	}
+
+	long record(String layer, String plugin, Phase phase, long started) {
+		return record(layer, Optional.of(plugin), phase, started);
+	}
+
+	private long record(String layer, Optional<String> plugin, Phase phase, long started) {
+		var now = System.nanoTime();
+		timings.add(new Timing(layer, plugin, phase, now - started));
+		return now;
+	}
+}
@@ -20,6 +20,11 @@
  */
 package com.sshtools.bootlace.platform;
 
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.time.Duration;
 
 import com.sshtools.bootlace.api.PluginContext.PluginHostInfo;
 import com.sshtools.bootlace.platform.jini.INIReader;
@@ -40,6 +45,67 @@ public class Bootlace {
 		return new RootLayerBuilder(id);
 	}
 
+	/**
+	 * The directory used for caches when none is configured. This is the value of the
+	 * system property <code>bootlace.cache</code>, or <code>.bootlace/cache</code> in the
+	 * users home directory.
+	 * 
+	 * @return default cache directory
+	 */
+	public static Path defaultCacheDirectory() {
+		var prop = System.getProperty("bootlace.cache");
+		return prop == null 
+				? Paths.get(System.getProperty("user.home")).resolve(".bootlace").resolve("cache") 
+				: Paths.get(prop);
+	}
+
+	/**
+	 * Parse a duration as used in layer definitions, i.e. a whole number of seconds,
+	 * optionally suffixed with <code>s</code>, <code>m</code> or <code>h</code>.
+	 * 
+	 * @param duration duration string
+	 * @return duration
+	 */
+	static Duration parseDuration(String duration) {
+		var d = duration.toLowerCase();
+		if (d.endsWith("s")) {
+			return Duration.ofSeconds(Integer.parseInt(d.substring(0, d.length() - 1)));
+		} else if (d.endsWith("m")) {
+			return Duration.ofMinutes(Integer.parseInt(d.substring(0, d.length() - 1)));
+		} else if (d.endsWith("h")) {
+			return Duration.ofHours(Integer.parseInt(d.substring(0, d.length() - 1)));
+		} else {
+			return Duration.ofSeconds(Integer.parseInt(d));
+		}
+	}
+
+	/**
+	 * Parse an HTTP version as used in layer definitions, i.e. <code>1.1</code> or 
+	 * <code>2</code>, optionally prefixed with <code>http/</code>, or the name of the
+	 * {@link HttpClient.Version} constant.
+	 * 
+	 * @param version version string
+	 * @return version
+	 * @throws IllegalArgumentException if not a supported version
+	 */
+	static HttpClient.Version parseHttpVersion(String version) {
+		var v = version.trim().toLowerCase();
+		if(v.startsWith("http/")) {
+			v = v.substring(5);
+		}
+		switch(v) {
+		case "1.1":
+		case "http_1_1":
+			return HttpClient.Version.HTTP_1_1;
+		case "2":
+		case "2.0":
+		case "http_2":
+			return HttpClient.Version.HTTP_2;
+		default:
+			throw new IllegalArgumentException(MessageFormat.format("Unknown http-version `{0}`, may be `1.1` or `2`.", version));
+		}
+	}
+
 	@SuppressWarnings("unused")
 	static INIReader.Builder createINIReader() {
 		return new INIReader.Builder().
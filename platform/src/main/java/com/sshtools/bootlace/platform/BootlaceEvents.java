@@ -0,0 +1,243 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events for the work Bootlace does while opening and closing 
+ * layers. Fields are only filled in when the event will actually be committed,
+ * so when disabled the cost is little more than the allocation of the event.
+ */
+final class BootlaceEvents {
+	
+	private BootlaceEvents() {
+	}
+
+	@Name("com.sshtools.bootlace.LayerOpen")
+	@Label("Layer Open")
+	@Category({ "Bootlace", "Layers" })
+	@Description("A child layer being resolved and opened")
+	static final class LayerOpen extends Event {
+		@Label("Layer")
+		String layer;
+		
+		@Label("Type")
+		String type;
+
+		void commitIfEnabled(String layer, String type) {
+			if(shouldCommit()) {
+				this.layer = layer;
+				this.type = type;
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.LayerClose")
+	@Label("Layer Close")
+	@Category({ "Bootlace", "Layers" })
+	@Description("A child layer and its plugins being closed")
+	static final class LayerClose extends Event {
+		@Label("Layer")
+		String layer;
+
+		void commitIfEnabled(String layer) {
+			if(shouldCommit()) {
+				this.layer = layer;
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.ModuleLayerCreate")
+	@Label("Module Layer Create")
+	@Category({ "Bootlace", "Layers" })
+	@Description("Finding, resolving and defining the modules of a layer")
+	static final class ModuleLayerCreate extends Event {
+		@Label("Layer")
+		String layer;
+
+		@Label("Paths")
+		int paths;
+
+		@Label("Modules")
+		int modules;
+
+		void commitIfEnabled(String layer, int paths, int modules) {
+			if(shouldCommit()) {
+				this.layer = layer;
+				this.paths = paths;
+				this.modules = modules;
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.ArtifactResolve")
+	@Label("Artifact Resolve")
+	@Category({ "Bootlace", "Artifacts" })
+	@Description("Locating an artifact for a layer, downloading it if needed")
+	static final class ArtifactResolve extends Event {
+		@Label("Layer")
+		String layer;
+
+		@Label("Artifact")
+		String gav;
+
+		@Label("Path")
+		String path;
+
+		void commitIfEnabled(String layer, Object gav, Object path) {
+			if(shouldCommit()) {
+				this.layer = layer;
+				this.gav = String.valueOf(gav);
+				this.path = String.valueOf(path);
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.ArtifactDownload")
+	@Label("Artifact Download")
+	@Category({ "Bootlace", "Artifacts" })
+	@Description("Requesting an artifact from a remote repository, until the response headers are received")
+	static final class ArtifactDownload extends Event {
+		@Label("Artifact")
+		String gav;
+
+		@Label("URI")
+		String uri;
+
+		@Label("Repository")
+		String repository;
+
+		@Label("Status")
+		int status;
+
+		@Label("Content Length")
+		@DataAmount
+		long contentLength;
+
+		void commitIfEnabled(Object gav, Object uri, String repository, int status, long contentLength) {
+			if(shouldCommit()) {
+				this.gav = String.valueOf(gav);
+				this.uri = String.valueOf(uri);
+				this.repository = repository;
+				this.status = status;
+				this.contentLength = contentLength;
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.ArtifactStore")
+	@Label("Artifact Store")
+	@Category({ "Bootlace", "Artifacts" })
+	@Description("Transferring a downloaded artifact into the application repository")
+	static final class ArtifactStore extends Event {
+		@Label("Artifact")
+		String gav;
+
+		@Label("URI")
+		String uri;
+
+		@Label("Repository")
+		String repository;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		void commitIfEnabled(Object gav, Object uri, String repository, long bytes) {
+			if(shouldCommit()) {
+				this.gav = String.valueOf(gav);
+				this.uri = String.valueOf(uri);
+				this.repository = repository;
+				this.bytes = bytes;
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.ZipExpand")
+	@Label("Zip Expand")
+	@Category({ "Bootlace", "Layers" })
+	@Description("Expanding an extension archive")
+	static final class ZipExpand extends Event {
+		@Label("Archive")
+		String archive;
+
+		@Label("Layer")
+		String layer;
+
+		@Label("Size")
+		@DataAmount
+		long size;
+
+		void commitIfEnabled(Path archive, String layer) {
+			if(shouldCommit()) {
+				this.archive = archive.toString();
+				this.layer = layer;
+				try {
+					this.size = Files.size(archive);
+				}
+				catch(IOException ioe) {
+					this.size = -1;
+				}
+				commit();
+			}
+		}
+	}
+
+	@Name("com.sshtools.bootlace.PluginLifecycle")
+	@Label("Plugin Lifecycle")
+	@Category({ "Bootlace", "Plugins" })
+	@Description("A plugin lifecycle method being invoked")
+	static final class PluginLifecycle extends Event {
+		@Label("Layer")
+		String layer;
+
+		@Label("Plugin")
+		String plugin;
+
+		@Label("Phase")
+		String phase;
+
+		void commitIfEnabled(String layer, Object plugin, String phase) {
+			if(shouldCommit()) {
+				this.layer = layer;
+				this.plugin = plugin.getClass().getName();
+				this.phase = phase;
+				commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import com.sshtools.bootlace.api.Exceptions.ChecksumMismatch;
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.RemoteRepository.Checksum;
+
+/**
+ * Checksums of artifacts. Artifacts are digested as they are downloaded, and once 
+ * verified against the checksum published by the repository, the SHA-256 digest is
+ * recorded next to the artifact so it never needs to be computed again.
+ */
+final class Checksums {
+	
+	/**
+	 * Size of buffers used to copy and digest artifacts.
+	 */
+	final static int BUFFER_SIZE = 256 * 1024;
+	
+	private final static String SUFFIX = ".sha256";
+	
+	/**
+	 * Digests an artifact as it is streamed. Both SHA-1 and SHA-256 are calculated, as 
+	 * which checksum the repository publishes is not known until later.
+	 */
+	final static class Digests {
+		private final MessageDigest sha1 = digest("SHA-1");
+		private final MessageDigest sha256 = digest("SHA-256");
+		
+		void update(ByteBuffer buffer) {
+			sha1.update(buffer.duplicate());
+			sha256.update(buffer.duplicate());
+		}
+		
+		void update(byte[] buf, int off, int len) {
+			sha1.update(buf, off, len);
+			sha256.update(buf, off, len);
+		}
+		
+		void update(Path path) throws IOException {
+			try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				var buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+				while(channel.read(buf) != -1) {
+					buf.flip();
+					update(buf);
+					buf.clear();
+				}
+			}
+		}
+		
+		/**
+		 * Finish digesting, and check the result against a published checksum if there is one.
+		 * 
+		 * @param gav artifact
+		 * @param uri location of artifact
+		 * @param checksum published checksum
+		 * @return SHA-256 of artifact
+		 * @throws ChecksumMismatch if digest does not match published checksum
+		 */
+		String verify(GAV gav, URI uri, Optional<Checksum> checksum) throws ChecksumMismatch {
+			var sha1Hex = HexFormat.of().formatHex(sha1.digest());
+			var sha256Hex = HexFormat.of().formatHex(sha256.digest());
+			if(checksum.isPresent()) {
+				var expected = checksum.get();
+				var actual = expected.algorithm().equals("SHA-1") ? sha1Hex : sha256Hex;
+				if(!actual.equalsIgnoreCase(expected.value())) {
+					throw new ChecksumMismatch(gav, uri, expected.algorithm(), expected.value(), actual);
+				}
+			}
+			return sha256Hex;
+		}
+	}
+
+	private Checksums() {
+	}
+	
+	/**
+	 * Get the SHA-256 digest previously recorded for an artifact, as long as the artifact
+	 * has not been modified since.
+	 * 
+	 * @param artifact artifact
+	 * @return digest
+	 */
+	static Optional<String> recorded(Path artifact) {
+		var file = artifact.resolveSibling(artifact.getFileName() + SUFFIX);
+		try {
+			if(Files.exists(file) && Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(artifact)) >= 0) {
+				return Optional.of(Files.readString(file, StandardCharsets.UTF_8).trim());
+			}
+		}
+		catch(IOException ioe) {
+		}
+		return Optional.empty();
+	}
+	
+	/**
+	 * Record the SHA-256 digest of a verified artifact.
+	 * 
+	 * @param artifact artifact
+	 * @param sha256 digest
+	 * @throws IOException on error
+	 */
+	static void record(Path artifact, String sha256) throws IOException {
+		Files.writeString(artifact.resolveSibling(artifact.getFileName() + SUFFIX), sha256, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Get the SHA-256 digest of an artifact, using the recorded digest if there is one.
+	 * 
+	 * @param artifact artifact
+	 * @return digest
+	 * @throws IOException on error
+	 */
+	static String sha256(Path artifact) throws IOException {
+		var recorded = recorded(artifact);
+		if(recorded.isPresent()) {
+			return recorded.get();
+		}
+		var digest = digest("SHA-256");
+		try(var channel = FileChannel.open(artifact, StandardOpenOption.READ)) {
+			var buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			while(channel.read(buf) != -1) {
+				buf.flip();
+				digest.update(buf);
+				buf.clear();
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+	
+	static MessageDigest digest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
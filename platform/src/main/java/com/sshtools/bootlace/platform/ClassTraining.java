@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Records which classes are defined in each layer during a representative
+ * run (the <em>training</em> run), and on later boots loads those same classes 
+ * on low priority background threads as soon as each layer is opened.
+ * <p>
+ * Classes are recorded using the Flight Recorder <code>jdk.ClassDefine</code> event, and 
+ * are attributed to a layer by their package when training stops.
+ */
+final class ClassTraining {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+
+	private final Path directory;
+	private final Set<String> defined = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean stopped = new AtomicBoolean();
+	private RecordingStream stream;
+	private ExecutorService preloader;
+	private boolean closed;
+
+	ClassTraining(Path directory) {
+		this.directory = directory.resolve("training");
+	}
+
+	void start() {
+		LOG.info("Recording classes defined by layers for training in {0}", directory);
+		stream = new RecordingStream();
+		stream.enable("jdk.ClassDefine");
+		stream.onEvent("jdk.ClassDefine", evt -> {
+			var name = evt.getClass("definedClass").getName();
+			/* Skip hidden classes, e.g. lambdas, they can't be loaded by name */
+			if(name.indexOf('/') == -1) {
+				defined.add(name);
+			}
+		});
+		stream.startAsync();
+	}
+
+	/**
+	 * Stop recording, and write the training files for each layer. Only the first
+	 * call does anything.
+	 * 
+	 * @param layers module layers, keyed by layer ID
+	 */
+	void stop(Map<String, ModuleLayer> layers) {
+		if(stream == null || !stopped.compareAndSet(false, true)) {
+			return;
+		}
+		stream.close();
+		
+		var packages = new HashMap<String, String>();
+		layers.forEach((id, layer) -> 
+			layer.modules().forEach(mod -> 
+				mod.getPackages().forEach(pkg -> packages.put(pkg, id))
+			)
+		);
+		
+		var byLayer = new HashMap<String, Set<String>>();
+		defined.forEach(name -> {
+			var idx = name.lastIndexOf('.');
+			var id = idx == -1 ? null : packages.get(name.substring(0, idx));
+			if(id != null) {
+				byLayer.computeIfAbsent(id, k -> new TreeSet<>()).add(name);
+			}
+		});
+		
+		try {
+			Files.createDirectories(directory);
+			for(var en : byLayer.entrySet()) {
+				var file = trainingFile(en.getKey());
+				var tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+				try {
+					Files.write(tmp, en.getValue(), StandardCharsets.UTF_8);
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				finally {
+					Files.deleteIfExists(tmp);
+				}
+				LOG.info("Recorded {0} classes for layer `{1}`", en.getValue().size(), en.getKey());
+			}
+		}
+		catch(IOException ioe) {
+			LOG.warning("Failed to write class training.", ioe);
+		}
+	}
+
+	/**
+	 * Load all classes previously recorded for a layer in the background, if there 
+	 * are any. Classes are not initialised.
+	 * 
+	 * @param id layer ID
+	 * @param loader layer class loader
+	 */
+	void preload(String id, ClassLoader loader) {
+		var file = trainingFile(id);
+		if(!Files.exists(file)) {
+			return;
+		}
+		
+		List<String> names;
+		try {
+			names = Files.readAllLines(file, StandardCharsets.UTF_8);
+		}
+		catch(IOException ioe) {
+			LOG.warning(MessageFormat.format("Failed to read class training for `{0}`", id), ioe);
+			return;
+		}
+		
+		Runnable task = () -> {
+			var started = System.nanoTime();
+			var failed = new ArrayList<String>();
+			for(var name : names) {
+				try {
+					Class.forName(name, false, loader);
+				}
+				catch(ClassNotFoundException | LinkageError e) {
+					failed.add(name);
+				}
+			}
+			if(LOG.debug()) {
+				LOG.debug("Preloaded {0} classes for `{1}` in {2}ms, {3} failed", 
+						names.size() - failed.size(), id, (System.nanoTime() - started) / 1_000_000, failed.size());
+			}
+		};
+		synchronized(this) {
+			if(!closed) {
+				preloader().execute(task);
+			}
+		}
+	}
+
+	/**
+	 * Stop any preloading, no more classes will be preloaded after this.
+	 */
+	synchronized void close() {
+		closed = true;
+		if(preloader != null) {
+			preloader.shutdownNow();
+			preloader = null;
+		}
+	}
+
+	private synchronized ExecutorService preloader() {
+		if(preloader == null) {
+			var idx = new AtomicInteger();
+			preloader = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 4), r -> {
+				var thread = new Thread(r, "BootlacePreload-" + idx.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+		return preloader;
+	}
+
+	private Path trainingFile(String id) {
+		return directory.resolve(id.replaceAll("[^A-Za-z0-9._-]", "_") + ".classes");
+	}
+}
@@ -52,6 +52,8 @@ public final class DefaultLayerImpl extends AbstractChildLayer implements Defaul
 		private Optional<String> icon = Optional.empty();
 		private Optional<String> description = Optional.empty();
 		private Path baseDir = Paths.get(System.getProperty("user.dir"));
+		private boolean parallelPlugins;
+		private boolean lazy;
 
 		public Builder(String id) {
 			super(id);
@@ -70,6 +72,45 @@ public final class DefaultLayerImpl extends AbstractChildLayer implements Defaul
 			return super.fromDescriptor(descriptor);
 		}
 
+		@Override
+		protected DefaultLayerImpl.Builder fromComponentSection(Section section) {
+			section.getBooleanOr("parallel-plugins").ifPresent(this::withParallelPlugins);
+			section.getBooleanOr("lazy").ifPresent(this::withLazy);
+			return super.fromComponentSection(section);
+		}
+
+		public DefaultLayerImpl.Builder withLazy() {
+			return withLazy(true);
+		}
+
+		/**
+		 * Do not resolve or open this layer at boot. Instead it is activated the
+		 * first time it is looked up by ID, or something asks for a plugin or service
+		 * that it provides.
+		 * 
+		 * @param lazy lazy
+		 * @return this for chaining
+		 */
+		public DefaultLayerImpl.Builder withLazy(boolean lazy) {
+			this.lazy = lazy;
+			return this;
+		}
+
+		public DefaultLayerImpl.Builder withParallelPlugins() {
+			return withParallelPlugins(true);
+		}
+
+		/**
+		 * Instantiate and open independent plugins in this layer concurrently, 
+		 * using the module dependencies between them to decide the order.
+		 * 
+		 * @param parallelPlugins parallel plugins
+		 * @return this for chaining
+		 */
+		public DefaultLayerImpl.Builder withParallelPlugins(boolean parallelPlugins) {
+			this.parallelPlugins = parallelPlugins;
+			return this;
+		}
 
 		public DefaultLayerImpl.Builder withBaseDirectory(Path baseDir) {
 			this.baseDir = baseDir;
@@ -223,6 +264,8 @@ public final class DefaultLayerImpl extends AbstractChildLayer implements Defaul
 	protected final Set<ArtifactRef> artifacts;
 	
 	final List<PluginRef> pluginRefs = new ArrayList<>();
+	final boolean parallelPlugins;
+	final boolean lazy;
 	Optional<LayerArtifacts> layerArtifacts = Optional.empty();
 	Set<Layer> publicLayers = new LinkedHashSet<>(); 
 	private final Optional<String> icon, description;
@@ -232,6 +275,8 @@ public final class DefaultLayerImpl extends AbstractChildLayer implements Defaul
 		artifacts = new LinkedHashSet<>(layerBuilder.artifacts);
 		icon = layerBuilder.icon;
 		description = layerBuilder.description;
+		parallelPlugins = layerBuilder.parallelPlugins;
+		lazy = layerBuilder.lazy;
 	}
 
 	@Override
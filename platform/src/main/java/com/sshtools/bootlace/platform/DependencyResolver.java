@@ -0,0 +1,442 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.platform.POM.Dependency;
+
+/**
+ * Resolves the complete runtime closure of an artifact from its POM, in the same way
+ * Maven does.
+ * <ul>
+ * <li>Parent POMs are inherited, and <code>${..}</code> properties interpolated.</li>
+ * <li><code>dependencyManagement</code> is applied, including BOMs brought in with 
+ * <code>import</code> scope. The root's management overrides the versions of all 
+ * transitive dependencies.</li>
+ * <li>Conflicts are mediated nearest wins, and the first declaration wins at the same depth.</li>
+ * <li><code>test</code>, <code>provided</code> and <code>system</code> scoped, and optional dependencies are
+ * not followed. Exclusions are honoured.</li>
+ * </ul>
+ * Each depth of the dependency tree has all its POMs fetched in parallel. Effective models 
+ * (and so parent and BOM models) are shared by all layers, up to {@link #MAX_MODELS} of 
+ * the most recently used, except those of snapshots or
+ * that inherit or import from a snapshot. These may change, so are only kept for the
+ * life of the resolver.
+ */
+final class DependencyResolver {
+	private final static Log LOG = Logs.of(BootLog.RESOLUTION);
+	
+	private final static Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)\\}");
+	private final static Set<String> IGNORED_SCOPES = Set.of("test", "provided", "system", "import");
+	private final static Set<String> ARTIFACT_TYPES = Set.of("jar", "bundle");
+
+	/**
+	 * Locates POMs for the resolver.
+	 */
+	@FunctionalInterface
+	interface PomSource {
+		/**
+		 * Find the POM for an artifact.
+		 * 
+		 * @param gav artifact, without classifier
+		 * @return POM, or empty if it cannot be found
+		 * @throws IOException on error
+		 */
+		Optional<POM> pom(GAV gav) throws IOException;
+	}
+	
+	private record Model(GAV gav, Map<String, String> properties, List<Dependency> rawManaged, List<Dependency> rawDependencies, 
+			Map<String, Dependency> managed, List<Dependency> dependencies, boolean snapshot) {
+	}
+	
+	private record Node(GAV gav, Set<String> exclusions, int depth) {
+	}
+	
+	final static int MAX_MODELS = Integer.getInteger("bootlace.model-cache-size", 1024);
+	
+	private final static class Shared {
+		@SuppressWarnings("serial")
+		private final static Map<GAV, CompletableFuture<Model>> MODELS = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<GAV, CompletableFuture<Model>> eldest) {
+				return size() > MAX_MODELS;
+			}
+		});
+		private final static ExecutorService EXECUTOR;
+		
+		static {
+			var threads = new AtomicInteger();
+			EXECUTOR = Executors.newCachedThreadPool(r -> {
+				var thread = new Thread(r, "BootlacePom-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	private final PomSource source;
+	private final Map<GAV, CompletableFuture<Model>> snapshots = new ConcurrentHashMap<>();
+
+	DependencyResolver(PomSource source) {
+		this.source = source;
+	}
+	
+	/**
+	 * Resolve all runtime dependencies of an artifact.
+	 * 
+	 * @param root POM of artifact
+	 * @param pinned artifacts whose versions are already decided, and always win
+	 * @return dependencies, nearest first, not including the root itself
+	 * @throws IOException on error
+	 */
+	List<GAV> resolve(POM root, Collection<GAV> pinned) throws IOException {
+		var rootModel = effective(root, new ArrayDeque<>());
+		var pins = new HashMap<String, GAV>();
+		pinned.stream().filter(GAV::hasVersion).forEach(g -> pins.put(ga(g), g));
+		
+		var selected = new LinkedHashMap<String, GAV>();
+		var artifacts = new ArrayList<GAV>();
+		selected.put(key(root.gav()), root.gav());
+		
+		var level = List.of(new Node(root.gav(), Set.of(), 0));
+		var models = Map.of(root.gav(), CompletableFuture.completedFuture(Optional.of(rootModel)));
+		
+		while(!level.isEmpty()) {
+			var next = new ArrayList<Node>();
+			
+			for(var node : level) {
+				var model = join(models.get(node.gav()));
+				if(model.isEmpty()) {
+					continue;
+				}
+				
+				for(var dep : model.get().dependencies()) {
+					var managedByRoot = Optional.ofNullable(rootModel.managed().get(dep.key()));
+					var managed = managedByRoot.or(() -> Optional.ofNullable(model.get().managed().get(dep.key())));
+					
+					var scope = dep.scope().or(() -> managed.flatMap(Dependency::scope)).orElse("compile");
+					if(IGNORED_SCOPES.contains(scope) || dep.optional() || dep.groupId().isEmpty() || excluded(node.exclusions(), dep)) {
+						continue;
+					}
+					
+					var type = dep.type();
+					if(!type.equals("pom") && !ARTIFACT_TYPES.contains(type)) {
+						continue;
+					}
+					
+					var partial = new GAV.Builder().
+							withGroupId(dep.groupId()).
+							withArtifactId(dep.artifactId()).
+							withClassifier(dep.classifier()).
+							build();
+					var key = key(partial);
+					if(selected.containsKey(key)) {
+						/* Nearest wins */
+						continue;
+					}
+					
+					Optional<String> version;
+					var pin = pins.get(ga(partial));
+					if(pin != null)
+						version = pin.versionOr();
+					else if(node.depth() == 0)
+						version = dep.version().or(() -> managed.flatMap(Dependency::version));
+					else
+						version = managedByRoot.flatMap(Dependency::version).or(dep::version).or(() -> managed.flatMap(Dependency::version));
+					
+					if(version.isEmpty()) {
+						LOG.warning("No version for dependency `{0}` of `{1}`, ignoring it.", partial, node.gav());
+						continue;
+					}
+					
+					var gav = partial.toWithVersion(version(version.get()));
+					selected.put(key, gav);
+					if(!type.equals("pom")) {
+						artifacts.add(gav);
+					}
+					
+					var exclusions = new LinkedHashSet<>(node.exclusions());
+					exclusions.addAll(dep.exclusions());
+					next.add(new Node(gav, exclusions, node.depth() + 1));
+				}
+			}
+			
+			/* Fetch the whole of the next depth at once */
+			var fetching = new HashMap<GAV, CompletableFuture<Optional<Model>>>();
+			for(var node : next) {
+				fetching.put(node.gav(), CompletableFuture.supplyAsync(() -> {
+					try {
+						return Optional.of(model(node.gav(), new ArrayDeque<>()));
+					}
+					catch(IOException | RuntimeException e) {
+						LOG.warning(MessageFormat.format("Could not resolve dependencies of `{0}`, only the artifact itself will be used.", node.gav()), e);
+						return Optional.<Model>empty();
+					}
+				}, Shared.EXECUTOR));
+			}
+			models = fetching;
+			level = next;
+		}
+		
+		if(LOG.debug())
+			LOG.debug("Resolved {0} dependencies for `{1}`", artifacts.size(), root.gav());
+		
+		return artifacts;
+	}
+	
+	private Model model(GAV gav, Deque<GAV> chain) throws IOException {
+		/* Classified artifacts share the POM of the main artifact */
+		var key = new GAV.Builder().
+				withGroupId(gav.groupIdOr()).
+				withArtifactId(gav.artifactId()).
+				withVersion(gav.versionOr()).
+				build();
+		if(chain.contains(key)) {
+			throw new IOException(MessageFormat.format("Cycle in parent or import POMs of `{0}`, {1}", gav, chain));
+		}
+		
+		var existing = snapshots.get(key);
+		if(existing != null) {
+			return join(existing);
+		}
+		
+		var models = key.isSnapshot() ? snapshots : Shared.MODELS;
+		var future = new CompletableFuture<Model>();
+		existing = models.putIfAbsent(key, future);
+		if(existing != null) {
+			return join(existing);
+		}
+		
+		try {
+			var pom = source.pom(key).orElseThrow(() -> new IOException(MessageFormat.format("No POM found for `{0}`.", gav)));
+			chain.push(key);
+			try {
+				var model = effective(pom, chain);
+				if(model.snapshot() && models == Shared.MODELS) {
+					/* A release with a snapshot parent or BOM, so may change too */
+					snapshots.put(key, future);
+					Shared.MODELS.remove(key, future);
+				}
+				future.complete(model);
+				return model;
+			}
+			finally {
+				chain.pop();
+			}
+		}
+		catch(IOException | RuntimeException | Error e) {
+			/* Allow another attempt, maybe with other repositories */
+			models.remove(key, future);
+			snapshots.remove(key, future);
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+	
+	private Model effective(POM pom, Deque<GAV> chain) throws IOException {
+		var parent = pom.parent().isPresent() ? Optional.of(model(pom.parent().get(), chain)) : Optional.<Model>empty();
+		
+		/* Properties, child overrides parent */
+		var props = new HashMap<String, String>();
+		parent.ifPresent(p -> props.putAll(p.properties()));
+		props.putAll(pom.properties());
+		var gav = pom.gav();
+		for(var prefix : new String[] { "project.", "pom." }) {
+			props.put(prefix + "groupId", gav.groupId());
+			props.put(prefix + "artifactId", gav.artifactId());
+			props.put(prefix + "version", gav.version());
+		}
+		props.putIfAbsent("version", gav.version());
+		pom.parent().ifPresent(p -> {
+			props.put("project.parent.groupId", p.groupId());
+			props.put("project.parent.artifactId", p.artifactId());
+			props.put("project.parent.version", p.version());
+		});
+		
+		/* Inherited declarations are interpolated in the context of the child */
+		var rawManaged = new ArrayList<Dependency>();
+		parent.ifPresent(p -> rawManaged.addAll(p.rawManaged()));
+		rawManaged.addAll(pom.managedDependencies());
+		
+		var rawDependencies = new ArrayList<Dependency>();
+		parent.ifPresent(p -> rawDependencies.addAll(p.rawDependencies()));
+		rawDependencies.addAll(pom.declaredDependencies());
+		
+		var managed = new LinkedHashMap<String, Dependency>();
+		var imports = new ArrayList<Dependency>();
+		for(var dep : rawManaged) {
+			var interpolated = dep.interpolate(s -> interpolate(s, props));
+			if(interpolated.scope().orElse("").equals("import") && interpolated.type().equals("pom")) {
+				imports.add(interpolated);
+			}
+			else {
+				managed.put(interpolated.key(), interpolated);
+			}
+		}
+		
+		/* Declared management wins over imported, earlier imports win over later */
+		var snapshot = gav.isSnapshot() || parent.map(Model::snapshot).orElse(false);
+		for(var bom : imports) {
+			if(bom.version().isEmpty()) {
+				LOG.warning("Imported BOM `{0}` in `{1}` has no version, ignoring it.", bom.key(), gav);
+				continue;
+			}
+			var bomModel = model(bom.toGav(), chain);
+			bomModel.managed().forEach(managed::putIfAbsent);
+			snapshot |= bomModel.snapshot();
+		}
+		
+		var dependencies = new LinkedHashMap<String, Dependency>();
+		for(var dep : rawDependencies) {
+			var interpolated = dep.interpolate(s -> interpolate(s, props));
+			dependencies.put(interpolated.key(), interpolated);
+		}
+		
+		return new Model(gav, props, rawManaged, rawDependencies, managed, List.copyOf(dependencies.values()), snapshot);
+	}
+
+	private static String interpolate(String value, Map<String, String> props) {
+		for(int i = 0 ; i < 10 && value.contains("${"); i++) {
+			var matcher = PROPERTY.matcher(value);
+			var buf = new StringBuilder();
+			var changed = false;
+			while(matcher.find()) {
+				var name = matcher.group(1);
+				var replacement = props.get(name);
+				if(replacement == null)
+					replacement = System.getProperty(name);
+				if(replacement == null && name.startsWith("env."))
+					replacement = System.getenv(name.substring(4));
+				if(replacement == null) {
+					replacement = matcher.group();
+				}
+				else {
+					changed = true;
+				}
+				matcher.appendReplacement(buf, Matcher.quoteReplacement(replacement));
+			}
+			matcher.appendTail(buf);
+			value = buf.toString();
+			if(!changed)
+				break;
+		}
+		return value;
+	}
+	
+	/**
+	 * Version ranges are not mediated, as the versions available are not known. The 
+	 * lower bound is used if it is inclusive, otherwise the upper bound if that is
+	 * inclusive. Only the first of several ranges is considered.
+	 */
+	static String version(String version) {
+		if(version.startsWith("[") || version.startsWith("(")) {
+			var end = version.indexOf(']');
+			var endExclusive = version.indexOf(')');
+			if(end == -1 || (endExclusive != -1 && endExclusive < end)) {
+				end = endExclusive;
+			}
+			if(end == -1) {
+				throw new IllegalArgumentException(MessageFormat.format("Invalid version range `{0}`.", version));
+			}
+			var range = version.substring(0, end + 1);
+			var bounds = range.substring(1, range.length() - 1).split(",", -1);
+			var lower = bounds[0].trim();
+			if(!lower.isEmpty() && range.startsWith("[")) {
+				LOG.warning("Version range `{0}` is not supported, using `{1}`.", version, lower);
+				return lower;
+			}
+			var upper = bounds.length > 1 ? bounds[1].trim() : "";
+			if(!upper.isEmpty() && range.endsWith("]")) {
+				LOG.warning("Version range `{0}` is not supported, using `{1}`.", version, upper);
+				return upper;
+			}
+			throw new IllegalArgumentException(MessageFormat.format("Unsupported version range `{0}`, neither bound is inclusive.", version));
+		}
+		return version;
+	}
+	
+	private static boolean excluded(Set<String> exclusions, Dependency dep) {
+		for(var excl : exclusions) {
+			var idx = excl.indexOf(':');
+			var group = excl.substring(0, idx);
+			var artifact = excl.substring(idx + 1);
+			if((group.equals("*") || group.equals(dep.groupId().orElse(""))) &&
+			   (artifact.equals("*") || artifact.equals(dep.artifactId()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String ga(GAV gav) {
+		return gav.groupIdOr().orElse("") + ":" + gav.artifactId();
+	}
+	
+	private static String key(GAV gav) {
+		return ga(gav) + ":" + gav.classifierOr().orElse("");
+	}
+	
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		}
+		catch(CompletionException ce) {
+			var cause = ce.getCause();
+			if(cause instanceof IOException ioe)
+				throw ioe;
+			else if(cause instanceof UncheckedIOException uioe)
+				throw uioe.getCause();
+			else if(cause instanceof RuntimeException re)
+				throw re;
+			else if(cause instanceof Error err)
+				throw err;
+			else
+				throw new IOException(cause);
+		}
+	}
+}
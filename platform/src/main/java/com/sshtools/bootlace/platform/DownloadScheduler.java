@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+
+/**
+ * Loads artifacts on a bounded pool of threads, so that artifacts a layer is already
+ * known to need may be fetched while earlier ones are still being processed. There is
+ * only ever one load in flight for any particular GAV from the same repositories, 
+ * concurrent requests for it (from the same or different layers) all wait for that one 
+ * load. Once a load completes it is forgotten, so any later request loads again, which
+ * will usually find the artifact already stored.
+ */
+final class DownloadScheduler {
+	
+	@FunctionalInterface
+	interface Loader {
+		Path load() throws IOException;
+	}
+	
+	private record Key(GAV gav, Object sources) {
+	}
+
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	private final int threads;
+	private final Map<Key, CompletableFuture<Path>> loads = new ConcurrentHashMap<>();
+	private ExecutorService executor;
+
+	DownloadScheduler(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Start loading an artifact in the background if it is not already loading.
+	 * 
+	 * @param gav artifact
+	 * @param sources identifies the repositories the loader uses, must have a suitable <code>equals()</code>
+	 * @param loader loads the artifact
+	 * @return future path of loaded artifact
+	 */
+	CompletableFuture<Path> prefetch(GAV gav, Object sources, Loader loader) {
+		var key = new Key(gav, sources);
+		var future = new CompletableFuture<Path>();
+		var existing = loads.putIfAbsent(key, future);
+		if(existing != null) {
+			return existing;
+		}
+		
+		if(LOG.debug()) {
+			LOG.debug("Scheduling load of {0}", gav);
+		}
+		future.whenComplete((p, e) -> loads.remove(key, future));
+		try {
+			executor().execute(() -> {
+				try {
+					future.complete(loader.load());
+				}
+				catch(Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		}
+		catch(RejectedExecutionException ree) {
+			future.completeExceptionally(ree);
+		}
+		return future;
+	}
+
+	/**
+	 * Load an artifact, waiting for any load of the same artifact from the same repositories
+	 * that is already in flight.
+	 * 
+	 * @param gav artifact
+	 * @param sources identifies the repositories the loader uses, must have a suitable <code>equals()</code>
+	 * @param loader loads the artifact
+	 * @return path of loaded artifact
+	 * @throws IOException on error
+	 */
+	Path load(GAV gav, Object sources, Loader loader) throws IOException {
+		var future = prefetch(gav, sources, loader);
+		try {
+			return future.join();
+		}
+		catch(CompletionException ce) {
+			var cause = ce.getCause();
+			if(cause instanceof IOException ioe)
+				throw ioe;
+			else if(cause instanceof UncheckedIOException uioe)
+				throw uioe.getCause();
+			else if(cause instanceof RuntimeException re)
+				throw re;
+			else if(cause instanceof Error err)
+				throw err;
+			else
+				throw new IOException(cause);
+		}
+	}
+	
+	synchronized void close() {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	
+	private synchronized ExecutorService executor() {
+		if(executor == null) {
+			var count = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(threads, r -> {
+				var thread = new Thread(r, "BootlaceDownload-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+}
@@ -22,11 +22,13 @@ package com.sshtools.bootlace.platform;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.Executors;
@@ -64,17 +66,7 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 		protected Builder fromComponentSection(INI.Section section) {
 			super.fromComponentSection(section);
 			withDirectoryMonitor(section.getBooleanOr("monitor").orElse(true));
-			section.getOr("delay").ifPresent(d -> {
-				if (d.toLowerCase().endsWith("s")) {
-					withChangeDelay(Duration.ofSeconds(Integer.parseInt(d.substring(0, d.length() - 1))));
-				} else if (d.toLowerCase().endsWith("m")) {
-					withChangeDelay(Duration.ofMinutes(Integer.parseInt(d.substring(0, d.length() - 1))));
-				} else if (d.toLowerCase().endsWith("h")) {
-					withChangeDelay(Duration.ofHours(Integer.parseInt(d.substring(0, d.length() - 1))));
-				} else {
-					withChangeDelay(Duration.ofSeconds(Integer.parseInt(d)));
-				}
-			});
+			section.getOr("delay").map(Bootlace::parseDuration).ifPresent(this::withChangeDelay);
 			return this;
 		}
 
@@ -98,6 +90,7 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 	}
 
 	private final Thread watchThread;
+	private final WatchService watchService;
 
 	private ScheduledFuture<?> changedTask;
 
@@ -110,7 +103,7 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 
 			if (builder.directoryMonitor) {
 				
-				var watchService = FileSystems.getDefault().newWatchService();
+				watchService = FileSystems.getDefault().newWatchService();
 				
 				
 				writeDirectory.register(
@@ -141,7 +134,7 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 							});
 							key.reset();
 						}
-					} catch (InterruptedException ie) {
+					} catch (InterruptedException | ClosedWatchServiceException e) {
 					}
 				}, "DynamicLayerMonitor" + hashCode());
 				watchThread.start();
@@ -149,6 +142,7 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 
 			else {
 				watchThread = null;
+				watchService = null;
 			}
 
 		} catch (IOException e) {
@@ -157,6 +151,18 @@ public final class ExtensionLayerImpl extends AbstractStaticLayer implements Ext
 
 	}
 	
+	@Override
+	public void onClosed() {
+		if(watchThread != null) {
+			watchThread.interrupt();
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
 	@Override
 	protected void onRefresh() throws IOException {
 			checkForDeletedLayers();
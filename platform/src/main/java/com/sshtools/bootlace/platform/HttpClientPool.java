@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Builder;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+
+/**
+ * Wraps another {@link HttpClientFactory}, keeping one client per repository host for 
+ * the life of the root layer so that connections (and with HTTP/2, streams over a 
+ * single connection) are reused between all requests to that host.
+ */
+final class HttpClientPool implements HttpClientFactory {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+
+	private final HttpClientFactory delegate;
+	private final HttpClient.Version version;
+	private final Duration connectTimeout;
+	private final Optional<Duration> requestTimeout;
+	private final Optional<Executor> executor;
+	private final boolean closeExecutor;
+	private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+	HttpClientPool(HttpClientFactory delegate, HttpClient.Version version, Duration connectTimeout, 
+			Optional<Duration> requestTimeout, Optional<Executor> executor, boolean closeExecutor) {
+		this.delegate = delegate;
+		this.version = version;
+		this.connectTimeout = connectTimeout;
+		this.requestTimeout = requestTimeout;
+		this.executor = executor;
+		this.closeExecutor = closeExecutor;
+	}
+
+	@Override
+	public Builder get() {
+		var bldr = delegate.get().
+				version(version).
+				connectTimeout(connectTimeout);
+		executor.ifPresent(bldr::executor);
+		return bldr;
+	}
+
+	@Override
+	public HttpClient client(URI root) {
+		return clients.computeIfAbsent(root.getScheme() + "://" + root.getRawAuthority(), k -> {
+			if(LOG.debug()) {
+				LOG.debug("Creating {0} client for {1}", version, k);
+			}
+			return get().build();
+		});
+	}
+
+	@Override
+	public HttpRequest.Builder request(URI uri) {
+		var bldr = delegate.request(uri);
+		requestTimeout.ifPresent(bldr::timeout);
+		return bldr;
+	}
+	
+	/**
+	 * Close all clients, and the executor if it was created for this pool rather
+	 * than supplied by the application.
+	 */
+	void close() {
+		clients.values().forEach(HttpClient::close);
+		clients.clear();
+		if(closeExecutor) {
+			executor.filter(ExecutorService.class::isInstance).map(ExecutorService.class::cast).ifPresent(ExecutorService::shutdown);
+		}
+	}
+}
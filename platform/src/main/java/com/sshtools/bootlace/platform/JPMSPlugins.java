@@ -1,9 +1,11 @@
 package com.sshtools.bootlace.platform;
 
+import java.lang.module.ModuleDescriptor.Requires;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.stream.Collectors;
 
 import com.sshtools.bootlace.api.DependencyGraph;
 import com.sshtools.bootlace.api.Plugin;
@@ -29,6 +31,13 @@ final class JPMSPlugins  {
 		return  topologicallySorted;
 	}
 	
+	List<JPMSNode> upstream(JPMSNode node) {
+		var requires = node.getProvider().type().getModule().getDescriptor().requires().stream().
+				map(Requires::name).
+				collect(Collectors.toSet());
+		return list.stream().filter(p -> p != node && requires.contains(p.getProvider().type().getModule().getName())).toList();
+	}
+	
 	Optional<JPMSNode> forModule(String req) {
 		return list.stream().filter(p -> p.getProvider().type().getModule().getName().equals(req)).findFirst();
 	}
@@ -27,12 +27,20 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,38 +50,113 @@ import com.sshtools.bootlace.api.Exceptions.NotALayer;
 import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.Http.HttpClientFactory;
 import com.sshtools.bootlace.api.LayerArtifacts;
+import com.sshtools.bootlace.api.LocalRepository;
 import com.sshtools.bootlace.api.Logs;
 import com.sshtools.bootlace.api.Logs.BootLog;
 import com.sshtools.bootlace.api.Logs.Log;
 import com.sshtools.bootlace.api.DefaultLayer;
+import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.Repository;
 import com.sshtools.bootlace.api.ResolutionMonitor;
 import com.sshtools.bootlace.platform.RootLayerImpl.RootContextImpl;
 
 public class LayerArtifactsImpl implements LayerArtifacts {
+	
+	/**
+	 * The repositories and monitor used to load artifacts, resolved on the thread doing 
+	 * the expansion so loads on other threads never see the layer definition while it is 
+	 * being changed by contributed descriptors.
+	 */
+	private record Sources(Set<AppRepository> apps, Set<LocalRepository> locals, Set<RemoteRepository> remotes, Optional<ResolutionMonitor> monitor, Optional<MirrorHedging> hedging) {
+		
+		/**
+		 * Identify the repositories loads are made from, so loads of the same GAV are only 
+		 * shared with other layers that use the same repositories.
+		 * 
+		 * @return key
+		 */
+		List<String> key() {
+			var key = new ArrayList<String>();
+			apps.forEach(r -> key.add(key(r)));
+			locals.forEach(r -> key.add(key(r)));
+			remotes.forEach(r -> key.add(key(r)));
+			return key;
+		}
+		
+		private static String key(Repository repository) {
+			if(repository instanceof LocalRepositoryImpl lr)
+				return lr.id() + "@" + lr.root();
+			else if(repository instanceof RemoteRepositoryImpl rr)
+				return rr.id() + "@" + rr.root();
+			else
+				return repository.id() + "@" + repository.getClass().getName();
+		}
+		
+		RemoteRepository remote(GAV gav) {
+			var supported = remotes.stream().filter(r -> r.supported(gav)).toList();
+			if(supported.isEmpty()) {
+				throw new IllegalStateException("GAV " + gav + " is not supported by any repository.");
+			}
+			return hedging.map(h -> h.hedged(supported)).orElseGet(() -> supported.get(0));
+		}
+	}
 
 	private final static Log LOG = Logs.of(BootLog.LAYERS);
 
 	private Set<ArtifactRef> artifactsToDo = new LinkedHashSet<>();
 	private Set<ArtifactRef> artifactsDone = new LinkedHashSet<>();
 	private Set<ArtifactRef> finalArtifactsDone = new LinkedHashSet<>();
+	
+	/* Indexes over the sets above, so expansion does not rescan them for every artifact */
+	private final Map<ArtifactRef, GAV> resolvedGavs = new HashMap<>();
+	private final Set<GAV> withPath = new HashSet<>();
+	private final Set<GAV> withPathVersionless = new HashSet<>();
+	private final Set<String> idOnlyDone = new HashSet<>();
+	private Set<Path> paths;
+	private final List<GAV> loaded = new ArrayList<>();
+	private final List<GAV> skipped = new ArrayList<>();
 
 	private final DefaultLayerImpl pluginLayerDef;
 	private final HttpClientFactory httpClientFactory;
+	private final DownloadScheduler downloads;
+	private final Optional<MirrorHedging> hedging;
 	private final RootContextImpl rootContext;
 	private final Path baseDir;
+	private final Path pomDirectory;
+	private final Set<ArtifactRef> prefetched = new LinkedHashSet<>();
+	private Sources sources;
 	
-	LayerArtifactsImpl(Path baseDir, DefaultLayerImpl pluginLayerDef, HttpClientFactory httpClientFactory, RootContextImpl rootContext) {
+	LayerArtifactsImpl(Path baseDir, DefaultLayerImpl pluginLayerDef, HttpClientFactory httpClientFactory, DownloadScheduler downloads, Optional<MirrorHedging> hedging, RootContextImpl rootContext, Path pomDirectory, Optional<Path> lockDirectory) {
 		this.pluginLayerDef = pluginLayerDef;
 		this.httpClientFactory = httpClientFactory;
+		this.downloads = downloads;
+		this.hedging = hedging;
 		this.rootContext = rootContext;
 		this.baseDir = baseDir;
+		this.pomDirectory = pomDirectory;
 		
-		artifactsToDo.addAll(pluginLayerDef.artifacts());
+		var lockFile = lockDirectory.map(dir -> dir.resolve(pluginLayerDef.id().replaceAll("[^A-Za-z0-9._-]", "_") + ".lock"));
+		var inputs = ResolutionLock.inputs(pluginLayerDef, baseDir);
+		var lock = lockFile.flatMap(ResolutionLock::load).filter(l -> l.valid(inputs, rootContext::hasArtifact));
 		
-		try {
-			expand();
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+		if(lock.isPresent()) {
+			LOG.info("Using resolution lock for `{0}`", pluginLayerDef.id());
+			finalArtifactsDone.addAll(lock.get().apply(pluginLayerDef, rootContext));
+			loaded.addAll(lock.get().loaded());
+			pluginLayerDef.resolveMonitor().ifPresent(mon -> 
+				finalArtifactsDone.forEach(ref -> mon.have(ref.gav(), ref.path().get().toUri(), null))
+			);
+		}
+		else {
+			artifactsToDo.addAll(pluginLayerDef.artifacts());
+			
+			try {
+				expand();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			
+			lockFile.ifPresent(file -> writeLock(file, inputs));
 		}
 	}
 
@@ -89,21 +172,39 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 	
 	@Override
 	public Set<Path> paths() {
-		return Collections.unmodifiableSet(artifacts().stream().
-				map(ArtifactRef::path).
-				filter(Optional::isPresent).
-				map(Optional::get).
-				sorted((p1, p2) -> {
-					var d1 = Files.isDirectory(p1);
-					var d2 = Files.isDirectory(p2);
-					if(d1 && !d2)
-						return 1;
-					else if(d2 && !d1) 
-						return -1;
-					else
-						return p1.compareTo(p2);
-				}).
-				collect(Collectors.toSet()));
+		if(paths == null) {
+			/* Archives first, then directories, each in path order. File type is
+			 * checked once per path rather than on every comparison
+			 */
+			var directory = new HashMap<Path, Boolean>();
+			LinkedHashSet<Path> sorted = artifacts().stream().
+					map(ArtifactRef::path).
+					filter(Optional::isPresent).
+					map(Optional::get).
+					sorted((p1, p2) -> {
+						var d1 = directory.computeIfAbsent(p1, p -> Files.isDirectory(p));
+						var d2 = directory.computeIfAbsent(p2, p -> Files.isDirectory(p));
+						if(d1 && !d2)
+							return 1;
+						else if(d2 && !d1) 
+							return -1;
+						else
+							return p1.compareTo(p2);
+					}).
+					collect(Collectors.toCollection(LinkedHashSet::new));
+			paths = Collections.unmodifiableSet(sorted);
+		}
+		return paths;
+	}
+	
+	/**
+	 * Artifacts this layer added to the root context, i.e. those that were not already
+	 * loaded by a higher layer.
+	 * 
+	 * @return loaded artifacts
+	 */
+	List<GAV> loaded() {
+		return Collections.unmodifiableList(loaded);
 	}
 	
 	@Override
@@ -111,36 +212,53 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 		return "LayerArtifactsImpl [artifactsToDo=" + artifactsToDo + ", artifactsDone=" + artifactsDone + "]";
 	}
 
+	private void writeLock(Path file, String inputs) {
+		try {
+			var lock = ResolutionLock.of(inputs, pluginLayerDef, finalArtifactsDone, loaded, skipped);
+			if(lock.isPresent()) {
+				lock.get().write(file);
+			}
+			else {
+				Files.deleteIfExists(file);
+			}
+		}
+		catch(IOException ioe) {
+			LOG.warning(MessageFormat.format("Failed to write resolution lock for `{0}`", pluginLayerDef.id()), ioe);
+		}
+	}
+
 	private void expand() throws IOException {
 		while(!artifactsToDo.isEmpty()) {
+			prefetch();
+			
 			var first = artifactsToDo.iterator().next();
 			artifactsToDo.remove(first);
 			artifactsDone.add(first);
+			if(isIdOnly(first.gav())) {
+				idOnlyDone.add(first.gav().artifactId());
+			}
 			
 			/* Is this a reference for a versioned artifact, where we already have a
 			 * one with a path? Is so, skip
 			 */
-			if(resolveGav(first).hasVersion()) {
-				var skip = false;
-				for(var have : finalArtifactsDone) {
-					if(have.hasPath() && resolveGav(have).toWithoutVersion().equals(resolveGav(first).toWithoutVersion())) {
-						skip = true;
-						break;
-					}
-				}
-				if(skip) {
-					continue;
-				}
+			var resolved = resolveGav(first);
+			if(resolved.hasVersion() && withPathVersionless.contains(resolved.toWithoutVersion())) {
+				continue;
 			}
 			
 			if(rootContext.hasArtifact(first.gav())) {
 				LOG.warning("Found artifact {0} that is already loaded in a higher layer, skipping", first.gav());
+				skipped.add(first.gav());
 				continue;
 			}
 			
+			var evt = new BootlaceEvents.ArtifactResolve();
+			evt.begin();
 			var artifactFile = loadArtifact(first);
+			evt.commitIfEnabled(pluginLayerDef.id(), first.gav(), artifactFile);
 			rootContext.addArtifact(first.gav());
-			finalArtifactsDone.add(first.withPath(artifactFile));
+			loaded.add(first.gav());
+			addFinal(first.withPath(artifactFile));
 			
 			try {
 				var descriptor = new Descriptor.Builder().
@@ -151,6 +269,9 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 				LOG.debug("Found contributed descriptor in {0}", artifactFile);
 				
 				processDescriptor(pluginLayerDef, descriptor, artifactFile);
+				
+				/* May have added repositories or parents */
+				sources = null;
 			}
 			catch(NotALayer nle) {
 				if(LOG.trace())
@@ -167,18 +288,55 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 		}
 	}
 	
+	/**
+	 * Start loading any queued artifacts that have an exact version, while earlier 
+	 * artifacts are processed. Artifacts that {@link #expand()} would skip, i.e. those 
+	 * already loaded by a higher layer or already found with an explicit path, are not 
+	 * loaded.
+	 */
+	private void prefetch() {
+		for(var ref : artifactsToDo) {
+			var gav = ref.gav();
+			if(ref.path().isEmpty() && gav.hasVersion() && 
+			   !withPathVersionless.contains(gav.toWithoutVersion()) &&
+			   !rootContext.hasArtifact(gav) && 
+			   prefetched.add(ref)) {
+				var src = sources();
+				downloads.prefetch(gav, src.key(), () -> fetchArtifact(gav, src));
+			}
+		}
+	}
+	
+	private Sources sources() {
+		if(sources == null) {
+			sources = new Sources(
+				pluginLayerDef.resolveAppRepositories(), 
+				pluginLayerDef.resolveLocalRepositories(), 
+				pluginLayerDef.resolveRemoteRepositories(), 
+				pluginLayerDef.resolveMonitor(),
+				hedging
+			);
+		}
+		return sources;
+	}
+	
 	private void optimizeArtifacts() {
 		finalArtifactsDone = finalArtifactsDone.stream().filter(art -> {
-			return art.path().isPresent() || !isArtifactWithPathPresent(resolveGav(art));
-		}).collect(Collectors.toSet());
+			return art.path().isPresent() || !withPath.contains(resolveGav(art));
+		}).collect(Collectors.toCollection(LinkedHashSet::new));
 	}
 	
-	private boolean isArtifactWithPathPresent(GAV gav) {
-		for(var art : finalArtifactsDone) {
-			if(resolveGav(art).equals(gav) && art.path().isPresent())
-				return true;
+	private void addFinal(ArtifactRef ref) {
+		finalArtifactsDone.add(ref);
+		if(ref.hasPath()) {
+			var gav = resolveGav(ref);
+			withPath.add(gav);
+			withPathVersionless.add(gav.toWithoutVersion());
 		}
-		return false;
+	}
+	
+	private static boolean isIdOnly(GAV gav) {
+		return !gav.hasGroupId() && !gav.hasVersion() && !gav.hasClassifier();
 	}
 	
 	private void addArtifactsIfNotDone(ArtifactRef ref) {
@@ -187,14 +345,11 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 			/* Is there any existing artifact that has just the same artifact id, but no
 			 * version, no group and no classifier. If so, ignore this new artifact
 			 */
-			for(var a : artifactsDone) {
-				if(a.gav().artifactId().equals(ref.gav().artifactId()) &&
-				   !a.gav().hasGroupId() && !a.gav().hasVersion() && !a.gav().hasClassifier()) {
-					if(LOG.debug()) {
-						LOG.debug("Skipping id-only artifact `{0}`'", ref);
-					}		
-					return;
-				}
+			if(idOnlyDone.contains(ref.gav().artifactId())) {
+				if(LOG.debug()) {
+					LOG.debug("Skipping id-only artifact `{0}`'", ref);
+				}		
+				return;
 			}
 			
 			if(LOG.debug()) {
@@ -266,14 +421,18 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 			art.values().forEach((k, v) -> {
 				if(k.equals("*")) {
 					if(LOG.debug()) {
-						LOG.debug("Adding all direct maven dependencies for `{0}`", descriptor.id());
+						LOG.debug("Adding all maven dependencies for `{0}`", descriptor.id());
 					}
 					
+					/* Repositories may have just been added by this descriptor */
+					sources = null;
+					var src = sources();
+					var resolver = new DependencyResolver(gav -> findPom(gav, src));
+					var pinned = pluginLayerDef.artifacts().stream().map(ArtifactRef::gav).toList();
+					
 					pluginLayerDef.artifacts().forEach(defArt -> {
 						Artifact.find(defArt, descriptorPath).ifPresentOrElse(aart -> { 
-							aart.pom().dependencies().forEach(gav -> 
-								addArtifactsIfNotDone(ArtifactRef.of(gav))
-							);
+							aart.resolve(resolver, pinned).forEach(this::addArtifactsIfNotDone);
 						}, () -> {
 							throw new UnsupportedOperationException(defArt.gav().toString());
 						});
@@ -294,7 +453,8 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 	}
 
 	private Path loadArtifact(ArtifactRef ref) throws IOException {
-		var monitor = pluginLayerDef.resolveMonitor();
+		var src = sources();
+		var monitor = src.monitor();
 		
 		if(ref.path().isPresent()) {
 			
@@ -310,103 +470,234 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 		}
 		else {
 			var gav = resolveGav(ref);
-			LOG.info("Loading {0}", gav);
+			return downloads.load(gav, src.key(), () -> fetchArtifact(gav, src));
+		}
+	}
+
+	private Path fetchArtifact(GAV gav, Sources src) throws IOException {
+		var monitor = src.monitor();
+		LOG.info("Loading {0}", gav);
+		
+		var found = false;
+		var appRepositories = src.apps();
+		var locals = src.locals();
+
+		if (appRepositories.isEmpty()) {
+
+			LOG.debug("No app repository, just checking locals", gav);
+
+			/* Check locals */
+			if(locals.isEmpty()) {
+				throw new IOException(MessageFormat.format("""
+						Artifact `{0}` was not found, as there was neither an 'app-repository', 
+						nor a 'localRepository' configured to be able to retrieve it. 
+						Check your layers.ini for this layer. 
+						""", gav));
+			}
 			
-			var found = false;
-			var appRepositories = pluginLayerDef.resolveAppRepositories();
-			var locals = pluginLayerDef.resolveLocalRepositories();
-	
-			if (appRepositories.isEmpty()) {
-	
-				LOG.debug("No app repository, just checking locals", gav);
-	
-				/* Check locals */
-				if(locals.isEmpty()) {
-					throw new IOException(MessageFormat.format("""
-							Artifact `{0}` was not found, as there was neither an 'app-repository', 
-							nor a 'localRepository' configured to be able to retrieve it. 
-							Check your layers.ini for this layer. 
-							""", gav));
-				}
-				
-				for (var local : locals) {
-					var localResult = local.resolve(httpClientFactory, gav);
-					if (localResult.isPresent()) {
-	
-						var uri = localResult.get().uri();
-						LOG.debug("Local repository resolved {0} to {1}", gav, uri);
-	
-						var path = Paths.get(uri);
-						if (Files.exists(path)) {
-							found = true;
-							LOG.info("Found {0} @ {1}", gav, uri);
-							monitor.ifPresent(m -> m.have(gav, path.toUri(), local));
-							return path;
-						}
+			for (var local : locals) {
+				var localResult = local.resolve(httpClientFactory, gav);
+				if (localResult.isPresent()) {
+
+					var uri = localResult.get().uri();
+					LOG.debug("Local repository resolved {0} to {1}", gav, uri);
+
+					var path = Paths.get(uri);
+					if (Files.exists(path)) {
+						found = true;
+						LOG.info("Found {0} @ {1}", gav, uri);
+						monitor.ifPresent(m -> m.have(gav, path.toUri(), local));
+						return path;
 					}
 				}
-				
-				
-				throw new IOException(MessageFormat.format("""
-						Artifact `{0}` was not found, and could not be found by searching {1}
-						static local repositories. An 'app-repository' was not configured
-						either, so the artifact could not be downloaded from any remote
-						repositories if there are any. Check your layers.ini for this layer. 
-						""", gav, locals.size()));
-			} else {
-				for(var appRepository : appRepositories) {
-	
-					LOG.debug("App repository {0}", appRepository.id());
-	
-					var result = appRepository.resolve(httpClientFactory, gav);
-					if (result.isPresent()) {
-						var resolved = result.get().uri();
-						var path = Paths.get(resolved);
-						if (Files.exists(path)) {
-							/* Have in app repository */
-							var uri = path.toUri();
-							LOG.info("Found {0} @ {1}", gav, uri);
-							monitor.ifPresent(m -> m.have(gav, uri, appRepository));
-							return path;
-						} else {
-							/* Check locals */
-							for (var local : locals) {
-								var localResult = local.resolve(httpClientFactory, gav);
-								if (localResult.isPresent()) {
-									var uri = localResult.get().uri();
-	
-									LOG.debug("Local repository resolved {0} to {1}", gav, uri);
-	
-									path = Paths.get(uri);
-									if (Files.exists(path)) {
-										LOG.info("Found {0} @ {1}", gav, uri);
-										found = true;
-										var uri2 = path.toUri();
-										monitor.ifPresent(m -> m.have(gav, uri2, local));
-										return path;
-									}
+			}
+			
+			
+			throw new IOException(MessageFormat.format("""
+					Artifact `{0}` was not found, and could not be found by searching {1}
+					static local repositories. An 'app-repository' was not configured
+					either, so the artifact could not be downloaded from any remote
+					repositories if there are any. Check your layers.ini for this layer. 
+					""", gav, locals.size()));
+		} else {
+			for(var appRepository : appRepositories) {
+
+				LOG.debug("App repository {0}", appRepository.id());
+
+				var result = appRepository.resolve(httpClientFactory, gav);
+				if (result.isPresent()) {
+					var resolved = result.get().uri();
+					var path = Paths.get(resolved);
+					var have = Files.exists(path);
+					if (have && !snapshotChanged(gav, path, src)) {
+						/* Have in app repository */
+						var uri = path.toUri();
+						LOG.info("Found {0} @ {1}", gav, uri);
+						monitor.ifPresent(m -> m.have(gav, uri, appRepository));
+						return path;
+					} else if(!have) {
+						/* Check locals */
+						for (var local : locals) {
+							var localResult = local.resolve(httpClientFactory, gav);
+							if (localResult.isPresent()) {
+								var uri = localResult.get().uri();
+
+								LOG.debug("Local repository resolved {0} to {1}", gav, uri);
+
+								path = Paths.get(uri);
+								if (Files.exists(path)) {
+									LOG.info("Found {0} @ {1}", gav, uri);
+									found = true;
+									var uri2 = path.toUri();
+									monitor.ifPresent(m -> m.have(gav, uri2, local));
+									return path;
 								}
 							}
-	
 						}
-	
-						if (!found) {
+
+					}
+
+					if (!found) {
+						var lock = appRepository.lock(gav);
+						try(lock) {
+							/* Another process may have stored it while we waited for the lock */
+							var stored = Paths.get(resolved);
+							if (Files.exists(stored) && !snapshotChanged(gav, stored, src)) {
+								LOG.info("Found {0} @ {1}, stored by another process", gav, resolved);
+								monitor.ifPresent(m -> m.have(gav, resolved, appRepository));
+								return stored;
+							}
 							LOG.info("{0}, will try remote repositories", gav);
-							return downloadArtifact(gav, appRepository, monitor);
+							return downloadArtifact(gav, appRepository, src);
 						}
 					}
 				}
-				
-				
-				throw new IOException(MessageFormat.format("""
-						Artifact `{0}` was not found, and could not be found by searching {1}
-						application repositories   
-						""", gav, appRepositories.size()));
 			}
+			
+			
+			throw new IOException(MessageFormat.format("""
+					Artifact `{0}` was not found, and could not be found by searching {1}
+					application repositories   
+					""", gav, appRepositories.size()));
+		}
+	}
+
+	/**
+	 * Get whether an unresolved snapshot in the app repository is older than the one
+	 * its remote repository now has. If this cannot be determined, the snapshot already 
+	 * held is used.
+	 */
+	private boolean snapshotChanged(GAV gav, Path path, Sources src) {
+		if(!gav.isSnapshot() || gav.isResolved()) {
+			return false;
+		}
+		var remote = src.remotes().stream().filter(r -> r.supported(gav)).findFirst();
+		if(remote.isEmpty()) {
+			return false;
+		}
+		try {
+			var latest = remote.get().snapshotVersion(httpClientFactory, gav);
+			if(latest.isEmpty()) {
+				return false;
+			}
+			var versionFile = snapshotVersionFile(path);
+			var held = Files.exists(versionFile) ? Files.readString(versionFile).trim() : "";
+			if(held.equals(latest.get())) {
+				return false;
+			}
+			LOG.info("Snapshot {0} is now {1}, will download again", gav, latest.get());
+			return true;
+		}
+		catch(IOException | RuntimeException e) {
+			LOG.warning(MessageFormat.format("Could not check for a newer snapshot of {0}, using the one held.", gav), e);
+			return false;
 		}
 	}
 
+	private void recordSnapshotVersion(GAV gav, Path path, RemoteRepository remote) {
+		if(gav.isSnapshot() && !gav.isResolved()) {
+			try {
+				var version = remote.snapshotVersion(httpClientFactory, gav);
+				if(version.isPresent()) {
+					Files.writeString(snapshotVersionFile(path), version.get());
+				}
+			}
+			catch(IOException ioe) {
+				LOG.warning(MessageFormat.format("Could not record snapshot version of {0}.", gav), ioe);
+			}
+		}
+	}
+
+	private static Path snapshotVersionFile(Path path) {
+		return path.resolveSibling(path.getFileName() + ".snapshot");
+	}
+
+	/**
+	 * Find the POM of an artifact, looking next to the artifact in the app and local 
+	 * repositories, then inside the artifact itself, then in the cache of downloaded
+	 * POMs, and finally in the remote repositories. 
+	 */
+	private Optional<POM> findPom(GAV gav, Sources src) throws IOException {
+		var pomFile = gav.artifactId() + "-" + gav.version() + ".pom";
+		for(var repo : Stream.concat(src.apps().stream(), src.locals().stream()).toList()) {
+			var result = repo.resolve(httpClientFactory, gav);
+			if(result.isPresent()) {
+				var jar = Paths.get(result.get().uri());
+				var pom = jar.resolveSibling(pomFile);
+				if(Files.exists(pom)) {
+					return Optional.of(POM.of(pom));
+				}
+				if(Files.exists(jar)) {
+					try {
+						return Optional.of(POM.of(jar, gav));
+					}
+					catch(UncheckedIOException uioe) {
+						if(!(uioe.getCause() instanceof NoSuchFileException)) {
+							throw uioe.getCause();
+						}
+						/* Not a maven built jar */
+					}
+				}
+			}
+		}
+		
+		var cached = pomDirectory.resolve(LocalRepository.gavPath(gav).resolveSibling(pomFile));
+		if(!gav.isSnapshot() && Files.exists(cached)) {
+			return Optional.of(POM.of(cached));
+		}
+		
+		for(var remote : src.remotes()) {
+			if(remote.supported(gav)) {
+				try(var in = remote.pom(httpClientFactory, gav)) {
+					if(gav.isSnapshot()) {
+						return Optional.of(POM.of(in));
+					}
+					
+					/* Releases never change, so keep them */
+					Files.createDirectories(cached.getParent());
+					var tmp = Files.createTempFile(cached.getParent(), pomFile, ".tmp");
+					try {
+						Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+						Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					}
+					finally {
+						Files.deleteIfExists(tmp);
+					}
+					return Optional.of(POM.of(cached));
+				}
+				catch(NoSuchFileException nsfe) {
+					/* Try the next repository */
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
 	private GAV resolveGav(ArtifactRef ref) {
+		return resolvedGavs.computeIfAbsent(ref, this::lookupGav);
+	}
+
+	private GAV lookupGav(ArtifactRef ref) {
 		var gav = ref.gav();
 		if(!gav.hasVersion()) {
 			/* No version specific in layers.ini, see if we can get it from the 
@@ -422,35 +713,67 @@ public class LayerArtifactsImpl implements LayerArtifacts {
 		return gav;
 	}
 
-	private Path downloadArtifact(GAV gav, AppRepository appRepository,
-			Optional<ResolutionMonitor> monitor) throws IOException {
-		var remoteRepository = pluginLayerDef.resolveRemoteRepository(gav);
+	private Path downloadArtifact(GAV gav, AppRepository appRepository, Sources src) throws IOException {
+		var monitor = src.monitor();
+		var remoteRepository = src.remote(gav);
 		var result = remoteRepository.resolve(httpClientFactory, gav);
 		try {
 			if (result.isPresent()) {
 				var uri = result.get().uri();
 				monitor.ifPresent(m -> m.need(gav, uri, remoteRepository));
-				var downIn = remoteRepository.download(httpClientFactory, gav, uri, result.get(), monitor);
-				if(monitor.isPresent()) {
-					downIn = new FilterInputStream(downIn) {
-						private long total = 0;
-						
-						@Override
-						public int read(byte[] b, int off, int len) throws IOException {
-							var r = in.read(b, off, len);
-							if(r > -1) {
-								total += r;
-							}
-							monitor.get().downloading(gav, uri, remoteRepository, Optional.of(total));
-							return r;
-						}
-					};
-				}
-				try (var in = downIn) {
-					var path = appRepository.store(gav, in);
+				var evt = new BootlaceEvents.ArtifactStore();
+				evt.begin();
+				
+				var partial = appRepository.partial(gav);
+				if(partial.isPresent()) {
+					var download = new ResumableDownload(remoteRepository, httpClientFactory, gav, uri, result.get(), monitor, partial.get());
+					var bytes = download.download();
+					var path = appRepository.store(gav, partial.get());
+					Checksums.record(path, download.sha256());
+					recordSnapshotVersion(gav, path, remoteRepository);
+					evt.commitIfEnabled(gav, uri, remoteRepository.id(), bytes);
 					monitor.ifPresent(m -> m.downloaded(gav, uri, remoteRepository));
 					return path;
 				}
+				
+				var total = new AtomicLong();
+				var sha256 = new AtomicReference<String>();
+				var digests = new Checksums.Digests();
+				var download = remoteRepository.download(httpClientFactory, gav, uri, result.get(), monitor, 0, Optional.empty());
+				var checksum = remoteRepository.checksum(httpClientFactory, download.uri());
+				var downIn = new FilterInputStream(download.in()) {
+					private final byte[] single = new byte[1];
+					
+					@Override
+					public int read() throws IOException {
+						return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+					}
+					
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						var r = in.read(b, off, len);
+						if(r > -1) {
+							digests.update(b, off, r);
+							total.addAndGet(r);
+							monitor.ifPresent(m -> m.downloading(gav, uri, remoteRepository, Optional.of(total.get())));
+						}
+						else if(sha256.get() == null) {
+							/* Fails the store before the artifact is moved into place */
+							sha256.set(digests.verify(gav, download.uri(), checksum.join()));
+						}
+						return r;
+					}
+				};
+				
+				Path path;
+				try (var in = downIn) {
+					path = appRepository.store(gav, in);
+				}
+				Checksums.record(path, sha256.get());
+				recordSnapshotVersion(gav, path, remoteRepository);
+				evt.commitIfEnabled(gav, uri, remoteRepository.id(), total.get());
+				monitor.ifPresent(m -> m.downloaded(gav, uri, remoteRepository));
+				return path;
 			} else {
 				throw new NoSuchFileException(gav.toString());
 			}
@@ -21,15 +21,18 @@
 package com.sshtools.bootlace.platform;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
 import com.sshtools.bootlace.api.Layer;
 import com.sshtools.bootlace.api.LayerContext;
@@ -59,6 +62,30 @@ public final class LayerContextImpl implements LayerContext {
 	private final static Map<ModuleLayer, Layer> layerDefs = new ConcurrentHashMap<>();
 	private final static Map<ModuleLayer, ClassLoader> loaders = new ConcurrentHashMap<>();
 	private final static Map<Class<?>, Set<ModuleLayer>> serviceMaps = new ConcurrentHashMap<>();
+	private final static List<Predicate<String>> activators = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Add an activator, which is given the name of a service type that is being looked
+	 * up, and should open any (lazy) layers that provide it, returning <code>true</code> if
+	 * it did so.
+	 * 
+	 * @param activator activator
+	 */
+	static void addActivator(Predicate<String> activator) {
+		activators.add(activator);
+	}
+
+	static void removeActivator(Predicate<String> activator) {
+		activators.remove(activator);
+	}
+
+	private static boolean activate(Class<?> srvType) {
+		var activated = false;
+		for(var activator : activators) {
+			activated |= activator.test(srvType.getName());
+		}
+		return activated;
+	}
 
 	@SuppressWarnings("unused")
 	static void register(ModuleLayer layer, Layer layerDef, ClassLoader loader) {
@@ -89,7 +116,7 @@ public final class LayerContextImpl implements LayerContext {
 					}
 	
 					Provider.LOG.info("Registered service `{0}` for layer {1}", serviceName,  layerDef.id());
-					var lst = serviceMaps.computeIfAbsent(serviceType, a -> new HashSet<ModuleLayer>());
+					var lst = serviceMaps.computeIfAbsent(serviceType, a -> ConcurrentHashMap.<ModuleLayer>newKeySet());
 					lst.add(layer);
 				}
 			}
@@ -105,21 +132,30 @@ public final class LayerContextImpl implements LayerContext {
 
 	@Override
 	public <S> ServiceLoader<S> loadFirst(Class<S> srvType, BiFunction<ModuleLayer, Class<S>, ServiceLoader<S>> loader) {
+		var srvldr = findFirst(srvType, loader);
+		if(srvldr.isEmpty() && activate(srvType)) {
+			srvldr = findFirst(srvType, loader);
+		}
+		return srvldr.orElseThrow(() -> new ServiceConfigurationError("Service " + srvType.getName() + " not found in this or any parent layer."));
+	}
+
+	private <S> Optional<ServiceLoader<S>> findFirst(Class<S> srvType, BiFunction<ModuleLayer, Class<S>, ServiceLoader<S>> loader) {
 		synchronized(serviceMaps) {
 			var map = serviceMaps.get(srvType);
 			if(map != null) {
 				for(var ml : map) {
 					var srvldr = loader.apply(ml, srvType);
 					if(srvldr.stream().findFirst().isPresent())
-						return srvldr;
+						return Optional.of(srvldr);
 				}
 			}
-			throw new ServiceConfigurationError("Service " + srvType.getName() + " not found in this or any parent layer.");
+			return Optional.empty();
 		}
 	}
 
 	@Override
 	public <S> Iterable<ServiceLoader.Provider<S>> loadAll(Class<S> srvType, BiFunction<ModuleLayer, Class<S>, ServiceLoader<S>> loader) {
+		activate(srvType);
 		var map = serviceMaps.get(srvType);
 		if(map == null)
 			return Collections.emptyList();
@@ -32,6 +32,7 @@ import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.Http.HttpClientFactory;
 import com.sshtools.bootlace.api.LocalRepository;
 import com.sshtools.bootlace.api.XML;
+import com.sshtools.bootlace.api.XML.Fragment;
 
 public class LocalRepositoryImpl implements  LocalRepository {
 	
@@ -49,6 +50,8 @@ public class LocalRepositoryImpl implements  LocalRepository {
 		
 		private String name = "Local Repository";
 		
+		private Optional<RepositoryIndex> index = Optional.empty();
+		
 		@Override
 		public LocalRepository.LocalRepositoryBuilder withName(String name) {
 			this.name = name;
@@ -66,6 +69,18 @@ public class LocalRepositoryImpl implements  LocalRepository {
 			return this;
 		}
 		
+		/**
+		 * Use a particular repository index, i.e. the one in the root layer's cache 
+		 * directory. If not set, the one in the default cache directory is used.
+		 * 
+		 * @param index index
+		 * @return this for chaining
+		 */
+		LocalRepositoryBuilder withIndex(RepositoryIndex index) {
+			this.index = Optional.of(index);
+			return this;
+		}
+		
 		@Override
 		public LocalRepository build() {
 			return new LocalRepositoryImpl(this);
@@ -75,18 +90,25 @@ public class LocalRepositoryImpl implements  LocalRepository {
 	private final Path root;
 	private final String name;
 	private final String id;
+	private final RepositoryIndex index;
 	
 	private LocalRepositoryImpl(LocalRepositoryBuilder builder) {
 		this.root = builder.root;
 		this.name = builder.name;
 		this.id = ID;
+		this.index = builder.index.orElseGet(RepositoryIndex::get);
 	}
 
 	protected LocalRepositoryImpl(Path root, String name, String id) {
+		this(root, name, id, Optional.empty());
+	}
+
+	LocalRepositoryImpl(Path root, String name, String id, Optional<RepositoryIndex> index) {
 		super();
 		this.root = root;
 		this.name = name;
 		this.id = id;
+		this.index = index.orElseGet(RepositoryIndex::get);
 	}
 
 	@Override
@@ -95,36 +117,43 @@ public class LocalRepositoryImpl implements  LocalRepository {
 		var ngav = gav;
 		if(!gav.hasVersion()) {
 			var meta = resolveGav(gav).resolve("maven-metadata-local.xml");
-			if(Files.exists(meta)) {
-				try(var in = Files.newInputStream(meta)) {
-					ngav = gav.toWithVersion(XML.of(in).child("versioning").map(c -> {
-						var rel = c.value("release");
-						if(rel.isPresent()) {
-							return rel.get();
-						}
-						else {
-							var vers = c.child("versions");
-							if(vers.isPresent()) {
-								return vers.get().children().getLast().toString();
-							}
-							else {
-								throw new IllegalArgumentException("Local maven metadata for " + gav + " exists but has no versions. Latest version cannot be deduced.");
-							}
-						}
-					}).orElseThrow(() -> new IllegalArgumentException("Local maven metadata for " + gav + " exists but has no versions. Lateest version cannot be deduced.")));
-				}
-				catch(IOException ioe) {
-					throw new UncheckedIOException(ioe);
+			try {
+				var version = index.latest(meta, f -> Optional.of(latestVersion(gav, f)));
+				if(version.isEmpty()) {
+					return Optional.empty();
 				}
+				ngav = gav.toWithVersion(version.get());
 			}
-			else {
-				return Optional.empty();
+			catch(IOException ioe) {
+				throw new UncheckedIOException(ioe);
 			}
 		}
 		
 		return Optional.of(ResolutionResult.of(resolveGav(ngav).toUri()));
 	}
 
+	private static String latestVersion(GAV gav, Path meta) throws IOException {
+		try(var in = Files.newInputStream(meta)) {
+			/* Stops reading once versioning has ended */
+			var versioning = XML.select(in, "metadata/versioning/release", "metadata/versioning/versions");
+			var rel = versioning.get("metadata/versioning/release").stream().map(Fragment::text).filter(t -> !t.isEmpty()).findFirst();
+			if(rel.isPresent()) {
+				return rel.get();
+			}
+			else {
+				var vers = versioning.get("metadata/versioning/versions").stream().flatMap(v -> v.children().stream()).toList();
+				if(vers.isEmpty()) {
+					throw new IllegalArgumentException("Local maven metadata for " + gav + " exists but has no versions. Latest version cannot be deduced.");
+				}
+				return vers.getLast().text();
+			}
+		}
+	}
+
+	Path root() {
+		return root;
+	}
+
 	protected Path resolveGav(GAV gav) {
 		return root.resolve(LocalRepository.gavPath(gav));
 	}
@@ -0,0 +1,316 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.RemoteRepository.Download;
+import com.sshtools.bootlace.api.ResolutionMonitor;
+
+/**
+ * Spreads downloads over several remote repositories that can all serve the same 
+ * artifact (i.e. mirrors). The download is started on the repository that has 
+ * recently responded fastest. If it has not responded within the chosen percentile
+ * of its recent response times, a backup request is made to the next fastest, and 
+ * so on. Whichever responds first is used, and the others are abandoned. A repository
+ * that fails passes the request on to the next one straight away.
+ * <p>
+ * Response time is the time until the response headers (and so the first byte of
+ * content) arrive. Once a repository has been chosen, the content is read from it
+ * alone. 
+ */
+final class MirrorHedging {
+	private final static Log LOG = Logs.of(BootLog.RESOLUTION);
+
+	/* Number of recent response times kept for each repository */
+	private final static int SAMPLES = 32;
+	/* Fewer samples than this and the default delay is used */
+	private final static int MIN_SAMPLES = 5;
+	private final static long DEFAULT_DELAY_MS = 500;
+	private final static long MIN_DELAY_MS = 20;
+	/* Response time recorded for a repository that failed for a reason other than not having the artifact */
+	private final static long FAILURE_MS = 5000;
+	
+	/**
+	 * Recent response times of a single repository.
+	 */
+	private final static class Latency {
+		private final ArrayDeque<Long> samples = new ArrayDeque<>(SAMPLES);
+		
+		synchronized void record(long ms) {
+			if(samples.size() == SAMPLES) {
+				samples.removeFirst();
+			}
+			samples.addLast(ms);
+		}
+		
+		synchronized Optional<Long> percentile(int percentile) {
+			if(samples.size() < MIN_SAMPLES) {
+				return Optional.empty();
+			}
+			var sorted = samples.stream().sorted().toList();
+			return Optional.of(sorted.get(Math.min(sorted.size() - 1, (sorted.size() * percentile) / 100)));
+		}
+	}
+	
+	private record Attempt(RemoteRepository repository, Optional<Download> download, Optional<Throwable> error, long elapsed) {}
+	
+	private final int percentile;
+	private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+
+	MirrorHedging(int percentile) {
+		this.percentile = Math.max(1, Math.min(100, percentile));
+		var threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r -> {
+			var thread = new Thread(r, "BootlaceHedge-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Get a repository that downloads the artifact from whichever of the candidates responds
+	 * first. If there is only one candidate, it is returned as is.
+	 * 
+	 * @param candidates repositories that support the artifact, in configured order
+	 * @return repository
+	 */
+	RemoteRepository hedged(List<RemoteRepository> candidates) {
+		if(candidates.size() < 2) {
+			return candidates.get(0);
+		}
+		return new HedgedRepository(candidates);
+	}
+	
+	void close() {
+		executor.shutdownNow();
+	}
+	
+	private Latency latency(RemoteRepository repository) {
+		return latencies.computeIfAbsent(repository.id(), k -> new Latency());
+	}
+
+	private long delay(RemoteRepository repository) {
+		return Math.max(MIN_DELAY_MS, latency(repository).percentile(percentile).orElse(DEFAULT_DELAY_MS));
+	}
+	
+	private final class HedgedRepository implements RemoteRepository {
+		private final List<RemoteRepository> candidates;
+		private final Map<URI, RemoteRepository> owners = new ConcurrentHashMap<>();
+		
+		private HedgedRepository(List<RemoteRepository> candidates) {
+			/* Fastest first, repositories with no history keep their configured order and are tried first so they get some */
+			this.candidates = candidates.stream().
+					sorted(Comparator.comparingLong(r -> latency(r).percentile(50).orElse(0l))).
+					toList();
+		}
+
+		@Override
+		public String name() {
+			return candidates.get(0).name();
+		}
+
+		@Override
+		public String id() {
+			return candidates.get(0).id();
+		}
+
+		@Override
+		public boolean supported(GAV gav) {
+			return candidates.stream().anyMatch(r -> r.supported(gav));
+		}
+
+		@Override
+		public Optional<ResolutionResult> resolve(HttpClientFactory httpFactory, GAV gav) {
+			for(var candidate : candidates) {
+				var result = candidate.resolve(httpFactory, gav);
+				if(result.isPresent()) {
+					return result;
+				}
+			}
+			return Optional.empty();
+		}
+
+		@Override
+		public Optional<String> snapshotVersion(HttpClientFactory httpClient, GAV gav) throws IOException {
+			return candidates.get(0).snapshotVersion(httpClient, gav);
+		}
+
+		@Override
+		public InputStream pom(HttpClientFactory httpClient, GAV gav) throws IOException {
+			NoSuchFileException nsfe = null;
+			for(var candidate : candidates) {
+				try {
+					return candidate.pom(httpClient, gav);
+				}
+				catch(NoSuchFileException e) {
+					nsfe = e;
+				}
+			}
+			throw nsfe;
+		}
+
+		@Override
+		public CompletableFuture<Optional<Checksum>> checksum(HttpClientFactory httpClient, URI uri) {
+			return owners.getOrDefault(uri, candidates.get(0)).checksum(httpClient, uri);
+		}
+
+		@Override
+		public InputStream download(HttpClientFactory httpClient, GAV gav, URI uri, ResolutionResult result,
+				Optional<ResolutionMonitor> monitor) throws IOException {
+			return download(httpClient, gav, uri, result, monitor, 0, Optional.empty()).in();
+		}
+
+		@Override
+		public Download download(HttpClientFactory httpClient, GAV gav, URI uri, ResolutionResult result,
+				Optional<ResolutionMonitor> monitor, long offset, Optional<String> validator) throws IOException {
+			var attempts = new LinkedBlockingQueue<Attempt>();
+			var running = new ArrayList<Future<?>>();
+			var settled = new AtomicBoolean();
+			var next = 0;
+			var inFlight = 0;
+			Throwable error = null;
+			
+			try {
+				while(true) {
+					if(inFlight == 0) {
+						if(next == candidates.size()) {
+							break;
+						}
+						running.add(start(candidates.get(next++), httpClient, gav, result, monitor, offset, validator, attempts, settled));
+						inFlight++;
+					}
+					
+					var waitFor = next < candidates.size() ? delay(candidates.get(next - 1)) : Long.MAX_VALUE;
+					var attempt = attempts.poll(waitFor, TimeUnit.MILLISECONDS);
+					if(attempt == null) {
+						var backup = candidates.get(next++);
+						LOG.info("No response for {0} within {1}ms, also trying {2}", gav, waitFor, backup.id());
+						running.add(start(backup, httpClient, gav, result, monitor, offset, validator, attempts, settled));
+						inFlight++;
+						continue;
+					}
+					
+					inFlight--;
+					var failed = attempt.error().filter(e -> !(e instanceof NoSuchFileException)).isPresent();
+					latency(attempt.repository()).record(failed ? Math.max(attempt.elapsed(), FAILURE_MS) : attempt.elapsed());
+					if(attempt.download().isPresent()) {
+						synchronized(attempts) {
+							settled.set(true);
+						}
+						var download = attempt.download().get();
+						owners.put(download.uri(), attempt.repository());
+						if(LOG.debug())
+							LOG.debug("Using {0} for {1}, responded in {2}ms", attempt.repository().id(), gav, attempt.elapsed());
+						return download;
+					}
+					
+					var cause = attempt.error().get();
+					if(error == null)
+						error = cause;
+					else
+						error.addSuppressed(cause);
+				}
+			}
+			catch(InterruptedException ie) {
+				throw new IllegalStateException(ie);
+			}
+			finally {
+				synchronized(attempts) {
+					settled.set(true);
+				}
+				running.forEach(f -> f.cancel(true));
+				/* Close anything that responded after the winner */
+				for(var attempt : attempts) {
+					attempt.download().ifPresent(d -> close(d.in()));
+				}
+			}
+			
+			if(error instanceof IOException ioe)
+				throw ioe;
+			else if(error instanceof UncheckedIOException uioe)
+				throw uioe.getCause();
+			else if(error instanceof RuntimeException re)
+				throw re;
+			else if(error instanceof Error err)
+				throw err;
+			else
+				throw new IOException(error);
+		}
+		
+		private Future<?> start(RemoteRepository repository, HttpClientFactory httpClient, GAV gav, ResolutionResult result,
+				Optional<ResolutionMonitor> monitor, long offset, Optional<String> validator, LinkedBlockingQueue<Attempt> attempts, AtomicBoolean settled) {
+			return executor.submit(() -> {
+				var started = System.currentTimeMillis();
+				Attempt attempt;
+				try {
+					var resolved = repository.resolve(httpClient, gav).orElseThrow(() -> new NoSuchFileException(gav.toString()));
+					attempt = new Attempt(repository, Optional.of(repository.download(httpClient, gav, resolved.uri(), resolved, monitor, offset, validator)), Optional.empty(), System.currentTimeMillis() - started);
+				}
+				catch(Throwable e) {
+					attempt = new Attempt(repository, Optional.empty(), Optional.of(e), System.currentTimeMillis() - started);
+				}
+				synchronized(attempts) {
+					if(!settled.get()) {
+						attempts.add(attempt);
+						return;
+					}
+				}
+				/* Too late, another repository was used */
+				attempt.download().ifPresent(d -> close(d.in()));
+			});
+		}
+	}
+	
+	private static void close(InputStream in) {
+		try {
+			in.close();
+		}
+		catch(IOException ioe) {
+		}
+	}
+}
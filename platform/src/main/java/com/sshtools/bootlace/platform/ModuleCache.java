@@ -0,0 +1,331 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+
+/**
+ * Caches the module descriptors of jar files on disk, so that a {@link ModuleFinder}
+ * can be created for a layer without opening every jar to read its <code>module-info.class</code>
+ * or derive an automatic module. Each entry is keyed by its path, and is invalid as soon as
+ * the size or modification time of the jar changes. 
+ * <p>
+ * Directories are never cached, as their contents may change without their own 
+ * attributes changing. They are always found using a standard {@link ModuleFinder}.
+ */
+final class ModuleCache {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	private final static int FORMAT = 1;
+	private final static byte EXPLICIT = 0;
+	private final static byte AUTOMATIC = 1;
+	
+	private final Path directory;
+
+	ModuleCache(Path directory) {
+		this.directory = directory.resolve("modules");
+	}
+
+	/**
+	 * Create a finder for the given module path entries. Jars are searched first, 
+	 * then directories, each in path order.
+	 * 
+	 * @param entries module path entries
+	 * @return finder
+	 */
+	ModuleFinder finder(Set<Path> entries) {
+		var jars = new ArrayList<Entry>();
+		var dirs = new ArrayList<Path>();
+		
+		for(var path : entries.stream().map(Path::toAbsolutePath).sorted().toList()) {
+			try {
+				var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+				if(attrs.isDirectory()) {
+					/* JPMS doesn't seem to liked directories that are symlinks */
+					dirs.add(path.toRealPath());
+				}
+				else {
+					jars.add(new Entry(path, attrs.size(), attrs.lastModifiedTime().toMillis()));
+				}
+			}
+			catch(IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		}
+		
+		var refs = new LinkedHashMap<String, ModuleReference>();
+		for(var jar : jars) {
+			var ref = load(jar).orElseGet(() -> scan(jar));
+			refs.putIfAbsent(ref.descriptor().name(), ref);
+		}
+		
+		var jarFinder = new ModuleFinder() {
+			@Override
+			public Optional<ModuleReference> find(String name) {
+				return Optional.ofNullable(refs.get(name));
+			}
+
+			@Override
+			public Set<ModuleReference> findAll() {
+				return Set.copyOf(refs.values());
+			}
+		};
+		
+		return dirs.isEmpty() ? jarFinder : ModuleFinder.compose(jarFinder, ModuleFinder.of(dirs.toArray(Path[]::new)));
+	}
+	
+	private ModuleReference scan(Entry entry) {
+		if(LOG.debug())
+			LOG.debug("Scanning {0} for module", entry.path());
+		
+		try {
+			var realPath = entry.path().toRealPath();
+			var all = ModuleFinder.of(realPath).findAll();
+			if(all.size() != 1) {
+				throw new FindException(entry.path() + " does not contain exactly one module.");
+			}
+			var ref = all.iterator().next();
+			store(entry, realPath, ref.descriptor());
+			return ref;
+		}
+		catch(IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+	
+	private void store(Entry entry, Path realPath, ModuleDescriptor descriptor) throws IOException {
+		var file = cacheFile(entry.path());
+		Files.createDirectories(file.getParent());
+		var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try(var out = new DataOutputStream(Files.newOutputStream(tmp))) {
+				out.writeInt(FORMAT);
+				out.writeUTF(entry.path().toString());
+				out.writeLong(entry.size());
+				out.writeLong(entry.lastModified());
+				out.writeUTF(realPath.toString());
+				if(descriptor.isAutomatic()) {
+					out.writeByte(AUTOMATIC);
+					out.writeUTF(descriptor.name());
+					writeOptional(out, descriptor.rawVersion());
+					writeStrings(out, descriptor.packages());
+					out.writeInt(descriptor.provides().size());
+					for(var provides : descriptor.provides()) {
+						out.writeUTF(provides.service());
+						writeStrings(out, provides.providers());
+					}
+					writeOptional(out, descriptor.mainClass());
+				}
+				else {
+					out.writeByte(EXPLICIT);
+					var bytes = moduleInfo(realPath);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+					writeStrings(out, descriptor.packages());
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	private Optional<ModuleReference> load(Entry entry) {
+		var file = cacheFile(entry.path());
+		if(!Files.exists(file)) {
+			return Optional.empty();
+		}
+		
+		try(var in = new DataInputStream(Files.newInputStream(file))) {
+			if(in.readInt() != FORMAT || 
+			   !in.readUTF().equals(entry.path().toString()) ||
+			   in.readLong() != entry.size() ||
+			   in.readLong() != entry.lastModified()) {
+				LOG.debug("Cached module for {0} is stale", entry.path());
+				return Optional.empty();
+			}
+			
+			var realPath = Path.of(in.readUTF());
+			ModuleDescriptor descriptor;
+			if(in.readByte() == AUTOMATIC) {
+				var bldr = ModuleDescriptor.newAutomaticModule(in.readUTF());
+				readOptional(in).ifPresent(bldr::version);
+				bldr.packages(readStrings(in));
+				var provides = in.readInt();
+				for(int i = 0 ; i < provides; i++) {
+					bldr.provides(in.readUTF(), new ArrayList<>(readStrings(in)));
+				}
+				readOptional(in).ifPresent(bldr::mainClass);
+				descriptor = bldr.build();
+			}
+			else {
+				var bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				var packages = readStrings(in);
+				descriptor = ModuleDescriptor.read(ByteBuffer.wrap(bytes), () -> packages);
+			}
+			
+			return Optional.of(new JarModuleReference(descriptor, realPath));
+		}
+		catch(IOException | RuntimeException e) {
+			LOG.warning(MessageFormat.format("Ignoring unreadable cached module for {0}", entry.path()), e);
+			return Optional.empty();
+		}
+	}
+
+	private Path cacheFile(Path path) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256").digest(path.toString().getBytes(StandardCharsets.UTF_8));
+			return directory.resolve(HexFormat.of().formatHex(digest) + ".module");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] moduleInfo(Path jar) throws IOException {
+		try(var jf = new JarFile(jar.toFile(), false, ZipFile.OPEN_READ, Runtime.version())) {
+			var entry = jf.getJarEntry("module-info.class");
+			if(entry == null) {
+				throw new IOException("No module-info.class in " + jar);
+			}
+			try(var in = jf.getInputStream(entry)) {
+				return in.readAllBytes();
+			}
+		}
+	}
+	
+	private static void writeOptional(DataOutputStream out, Optional<String> value) throws IOException {
+		out.writeBoolean(value.isPresent());
+		if(value.isPresent())
+			out.writeUTF(value.get());
+	}
+	
+	private static Optional<String> readOptional(DataInputStream in) throws IOException {
+		return in.readBoolean() ? Optional.of(in.readUTF()) : Optional.empty();
+	}
+
+	private static void writeStrings(DataOutputStream out, Iterable<String> values) throws IOException {
+		var list = new ArrayList<String>();
+		values.forEach(list::add);
+		out.writeInt(list.size());
+		for(var value : list)
+			out.writeUTF(value);
+	}
+	
+	private static Set<String> readStrings(DataInputStream in) throws IOException {
+		var count = in.readInt();
+		var values = new HashSet<String>(count);
+		for(int i = 0 ; i < count; i++)
+			values.add(in.readUTF());
+		return values;
+	}
+	
+	private record Entry(Path path, long size, long lastModified) {}
+
+	private final static class JarModuleReference extends ModuleReference {
+		private final Path path;
+
+		JarModuleReference(ModuleDescriptor descriptor, Path path) {
+			super(descriptor, path.toUri());
+			this.path = path;
+		}
+
+		@Override
+		public ModuleReader open() throws IOException {
+			return new JarModuleReader(path);
+		}
+	}
+	
+	private final static class JarModuleReader implements ModuleReader {
+		private final JarFile jar;
+		private final String uri;
+
+		JarModuleReader(Path path) throws IOException {
+			jar = new JarFile(path.toFile(), true, ZipFile.OPEN_READ, Runtime.version());
+			uri = "jar:" + path.toUri() + "!/";
+		}
+
+		@Override
+		public Optional<URI> find(String name) throws IOException {
+			if(jar.getJarEntry(name) == null) {
+				return Optional.empty();
+			}
+			try {
+				return Optional.of(URI.create(uri + new URI(null, null, name, null).getRawPath()));
+			}
+			catch(URISyntaxException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public Optional<InputStream> open(String name) throws IOException {
+			var entry = jar.getJarEntry(name);
+			return entry == null ? Optional.empty() : Optional.of(jar.getInputStream(entry));
+		}
+
+		@Override
+		public Stream<String> list() throws IOException {
+			return jar.versionedStream().map(JarEntry::getName).sorted(Comparator.naturalOrder());
+		}
+
+		@Override
+		public void close() throws IOException {
+			jar.close();
+		}
+	}
+}
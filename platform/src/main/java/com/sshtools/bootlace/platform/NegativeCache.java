@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.api.RemoteRepository.UpdatePolicy;
+
+/**
+ * Remembers which artifacts remote repositories did not have, so the same failing 
+ * request is not made on every boot. Each repository's misses are kept in 
+ * <code>missing/&lt;id&gt;.properties</code> in the cache directory, along with when
+ * they were missed. Whether a miss is still valid is decided by the repository's
+ * {@link UpdatePolicy}. Each root layer has its own, in its configured cache directory.
+ * <p>
+ * Setting the system property <code>bootlace.refresh</code> to <code>true</code> ignores
+ * all previous misses.
+ */
+final class NegativeCache {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	/* Only used by repositories built outside of a root layer */
+	private final static class Default {
+		private final static NegativeCache DEFAULT = new NegativeCache(Bootlace.defaultCacheDirectory().resolve("missing"));
+	}
+	
+	static NegativeCache get() {
+		return Default.DEFAULT;
+	}
+	
+	private final Path directory;
+	private final Map<String, Properties> repositories = new ConcurrentHashMap<>();
+
+	NegativeCache(Path directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * Get whether an artifact is known to be missing from a repository.
+	 * 
+	 * @param repository repository id
+	 * @param gav artifact
+	 * @param policy update policy of repository
+	 * @return missing
+	 */
+	boolean isMissing(String repository, GAV gav, UpdatePolicy policy) {
+		if(Boolean.getBoolean("bootlace.refresh") || policy.interval().isZero()) {
+			return false;
+		}
+		var when = repository(repository).getProperty(gav.toString());
+		if(when == null) {
+			return false;
+		}
+		var age = Duration.ofMillis(System.currentTimeMillis() - Long.parseLong(when));
+		return age.isNegative() || age.compareTo(policy.interval()) < 0;
+	}
+	
+	void missing(String repository, GAV gav) {
+		var props = repository(repository);
+		synchronized(props) {
+			props.setProperty(gav.toString(), String.valueOf(System.currentTimeMillis()));
+			save(repository, props);
+		}
+	}
+	
+	void found(String repository, GAV gav) {
+		var props = repository(repository);
+		synchronized(props) {
+			if(props.remove(gav.toString()) != null) {
+				save(repository, props);
+			}
+		}
+	}
+
+	private Properties repository(String repository) {
+		return repositories.computeIfAbsent(repository, k -> {
+			var props = new Properties();
+			var file = file(k);
+			if(Files.exists(file)) {
+				try(var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+					props.load(in);
+				}
+				catch(IOException | IllegalArgumentException e) {
+					LOG.warning(MessageFormat.format("Ignoring unreadable list of missing artifacts {0}", file), e);
+				}
+			}
+			return props;
+		});
+	}
+	
+	private void save(String repository, Properties props) {
+		var file = file(repository);
+		try {
+			Files.createDirectories(directory);
+			var tmp = Files.createTempFile(directory, repository, ".tmp");
+			try {
+				try(var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+					props.store(out, "Artifacts missing from " + repository);
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally {
+				Files.deleteIfExists(tmp);
+			}
+		}
+		catch(IOException ioe) {
+			LOG.warning(MessageFormat.format("Failed to write list of missing artifacts {0}", file), ioe);
+		}
+	}
+	
+	private Path file(String repository) {
+		return directory.resolve(repository.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+	}
+}
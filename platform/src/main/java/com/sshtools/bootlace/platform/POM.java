@@ -25,25 +25,95 @@ import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.XML;
+import com.sshtools.bootlace.api.XML.Fragment;
+import com.sshtools.bootlace.api.Zip;
 
 public final class POM {
 	
 	private record ScopeVersion(String version, Optional<String> scope) {}
+	
+	/* Only what is needed is read, build, reporting, profiles etc are skipped */
+	final static String[] PATHS = {
+		"project/groupId", 
+		"project/artifactId", 
+		"project/version", 
+		"project/packaging", 
+		"project/parent", 
+		"project/properties", 
+		"project/dependencyManagement", 
+		"project/dependencies"
+	};
+	
+	/**
+	 * A dependency exactly as declared, before any properties are interpolated or 
+	 * managed versions applied.
+	 */
+	public record Dependency(Optional<String> groupId, String artifactId, Optional<String> version, Optional<String> classifier, 
+			String type, Optional<String> scope, boolean optional, Set<String> exclusions) {
+		
+		/**
+		 * Key used to match a dependency with its managed counterpart.
+		 * 
+		 * @return key
+		 */
+		public String key() {
+			return groupId.orElse("") + ":" + artifactId + ":" + type + ":" + classifier.orElse("");
+		}
+		
+		public Dependency interpolate(UnaryOperator<String> interpolator) {
+			var excl = new LinkedHashSet<String>();
+			exclusions.forEach(e -> excl.add(interpolator.apply(e)));
+			return new Dependency(groupId.map(interpolator), interpolator.apply(artifactId), version.map(interpolator), 
+					classifier.map(interpolator), interpolator.apply(type), scope.map(interpolator), optional, 
+					Collections.unmodifiableSet(excl));
+		}
+		
+		public GAV toGav() {
+			return new GAV.Builder().
+					withGroupId(groupId).
+					withArtifactId(artifactId).
+					withVersion(version).
+					withClassifier(classifier).
+					build();
+		}
+	}
 
 	public static POM of(Path path) {
-		try (var in = Files.newInputStream(path)) {
-			return of(in);
-		} catch (IOException ioe) {
-			throw new UncheckedIOException(ioe);
-		}
+		return PomCache.get().get(path, "", p -> {
+			try (var in = Files.newInputStream(p)) {
+				return of(in);
+			}
+		});
+	}
+
+	/**
+	 * Get the POM of an artifact from inside its jar.
+	 * 
+	 * @param jar jar file
+	 * @param gav artifact
+	 * @return pom
+	 * @throws UncheckedIOException on error, with a {@link java.nio.file.NoSuchFileException} cause if the jar has no POM for the artifact 
+	 */
+	public static POM of(Path jar, GAV gav) {
+		var entry = String.format("META-INF/maven/%s/%s/pom.xml", gav.groupId(), gav.artifactId());
+		return PomCache.get().get(jar, entry, p -> {
+			try (var in = Zip.find(p, entry)) {
+				return of(in);
+			}
+		});
 	}
 
 	public static POM of(InputStream in) {
@@ -52,10 +122,15 @@ public final class POM {
 
 	private final GAV gav;
 	private final Set<GAV> dependencies;
+	private final Optional<GAV> parent;
+	private final String packaging;
+	private final Map<String, String> properties;
+	private final List<Dependency> managedDependencies;
+	private final List<Dependency> declaredDependencies;
 
 	private POM(InputStream in) {
 		
-		var project = XML.of(in);
+		var project = new Fragment("project", "", XML.select(in, PATHS).values().stream().flatMap(List::stream).toList());
 		var parentXml = project.child("parent");
 
 		/* GAV */
@@ -63,49 +138,61 @@ public final class POM {
 				.orElseThrow(() -> new IllegalArgumentException("POM has no artifactId"));
 		var groupId = project.value("groupId")
 				.orElseGet(() -> parentXml
-						.orElseThrow(() -> new IllegalStateException("No groupId, and no parent.")).value("groupId")
+						.flatMap(p -> p.value("groupId"))
 						.orElseThrow(() -> new IllegalArgumentException("No groupId, and no groupId in parent.")));
 		var version = project.value("version")
 				.orElseGet(() -> parentXml
-						.orElseThrow(() -> new IllegalStateException("No version, and no parent.")).value("version")
+						.flatMap(p -> p.value("version"))
 						.orElseThrow(() -> new IllegalArgumentException("No version, and no version in parent.")));
 		gav = GAV.ofParts(groupId, artifactId, version);
 		
+		parent = parentXml.map(p -> GAV.ofParts(
+				p.value("groupId").orElseThrow(() -> new IllegalArgumentException("Parent has no groupId.")),
+				p.value("artifactId").orElseThrow(() -> new IllegalArgumentException("Parent has no artifactId.")),
+				p.value("version").orElseThrow(() -> new IllegalArgumentException("Parent has no version."))));
+		packaging = project.value("packaging").orElse("jar");
+		
+		/* Properties */
+		var props = new LinkedHashMap<String, String>();
+		project.child("properties").ifPresent(propsEl -> 
+			propsEl.children().forEach(propEl -> props.put(propEl.name(), propEl.text()))
+		);
+		properties = Collections.unmodifiableMap(props);
 		
 		/* Managed Dependencies */
+		managedDependencies = project.child("dependencyManagement").
+				flatMap(mgEl -> mgEl.child("dependencies")).
+				map(POM::dependencies).
+				orElse(List.of());
+		
 		var managed = new HashMap<GAV, ScopeVersion>();
-		project.child("dependencyManagement").ifPresent(mgEl ->
-			mgEl.child("dependencies").ifPresent(depsEl ->
-				depsEl.children().forEach(depEl -> {
-				
-					var fullGav = new GAV.Builder().
-						withArtifactId(depEl.value("artifactId").orElseThrow(() -> new IllegalStateException("Dependency has no artifact."))).
-						withGroupId(depEl.value("groupId")).
-						withVersion(depEl.value("version")).build();
-						
-					managed.put(fullGav.toWithoutVersion(), new ScopeVersion(fullGav.version(), depEl.value("scope")));
-				})
-			)
-		);
+		managedDependencies.forEach(dep -> {
+			var partialGav = new GAV.Builder().
+				withArtifactId(dep.artifactId()).
+				withGroupId(dep.groupId()).build();
+			dep.version().ifPresent(v -> managed.put(partialGav, new ScopeVersion(v, dep.scope())));
+		});
 		
 		/* Dependencies */
+		declaredDependencies = project.child("dependencies").
+				map(POM::dependencies).
+				orElse(List.of());
+		
 		var deps = new LinkedHashSet<GAV>();
-		project.child("dependencies").ifPresent(depsEl ->
-			depsEl.children().forEach(depEl -> {
-				var partialGav = new GAV.Builder().
-					withArtifactId(depEl.value("artifactId").orElseThrow(() -> new IllegalStateException("Dependency has no artifact."))).
-					withGroupId(depEl.value("groupId")).build();
+		declaredDependencies.forEach(dep -> {
+			var partialGav = new GAV.Builder().
+				withArtifactId(dep.artifactId()).
+				withGroupId(dep.groupId()).build();
 
-				var scope = depEl.value("scope").orElseGet(() -> Optional.ofNullable(managed.get(partialGav)).map(sv -> sv.scope.orElse("")).orElse("")  );
-				if(scope.equals("test") || scope.equals("provided")) {
-					return;
-				}
-				
-				deps.add(partialGav.toWithVersion(
-					depEl.value("version").or(() -> Optional.ofNullable(managed.get(partialGav)).map(ScopeVersion::version))
-				));
-			})
-		);
+			var scope = dep.scope().orElseGet(() -> Optional.ofNullable(managed.get(partialGav)).map(sv -> sv.scope.orElse("")).orElse("")  );
+			if(scope.equals("test") || scope.equals("provided")) {
+				return;
+			}
+			
+			deps.add(partialGav.toWithVersion(
+				dep.version().or(() -> Optional.ofNullable(managed.get(partialGav)).map(ScopeVersion::version))
+			));
+		});
 		
 		dependencies = Collections.unmodifiableSet(deps);
 
@@ -118,9 +205,52 @@ public final class POM {
 	public Set<GAV> dependencies() {
 		return dependencies;
 	}
+	
+	public Optional<GAV> parent() {
+		return parent;
+	}
+	
+	public String packaging() {
+		return packaging;
+	}
+	
+	public Map<String, String> properties() {
+		return properties;
+	}
+	
+	public List<Dependency> managedDependencies() {
+		return managedDependencies;
+	}
+	
+	public List<Dependency> declaredDependencies() {
+		return declaredDependencies;
+	}
 
 	@Override
 	public String toString() {
 		return "POM [gav=" + gav + ", dependencies=" + dependencies + "]";
 	}
+	
+	private static List<Dependency> dependencies(Fragment depsEl) {
+		var l = new ArrayList<Dependency>();
+		depsEl.children().forEach(depEl -> {
+			var exclusions = new LinkedHashSet<String>();
+			depEl.child("exclusions").ifPresent(exclsEl -> 
+				exclsEl.children().forEach(exclEl -> 
+					exclusions.add(exclEl.value("groupId").orElse("*") + ":" + exclEl.value("artifactId").orElse("*"))
+				)
+			);
+			l.add(new Dependency(
+				depEl.value("groupId"),
+				depEl.value("artifactId").orElseThrow(() -> new IllegalStateException("Dependency has no artifact.")),
+				depEl.value("version"),
+				depEl.value("classifier"),
+				depEl.value("type").orElse("jar"),
+				depEl.value("scope"),
+				depEl.value("optional").map(Boolean::parseBoolean).orElse(false),
+				Collections.unmodifiableSet(exclusions)
+			));
+		});
+		return Collections.unmodifiableList(l);
+	}
 }
@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide cache of parsed POMs, so the same file (or the same POM inside the same 
+ * jar) is only parsed again if it changes. Entries are keyed by the file's path, size and 
+ * modification time, and the least recently used are evicted once there are more than
+ * {@link #MAX_ENTRIES}.
+ */
+final class PomCache {
+	
+	final static int MAX_ENTRIES = Integer.getInteger("bootlace.pom-cache-size", 1024);
+	
+	private final static class Default {
+		private final static PomCache DEFAULT = new PomCache(MAX_ENTRIES);
+	}
+	
+	static PomCache get() {
+		return Default.DEFAULT;
+	}
+	
+	@FunctionalInterface
+	interface Parser {
+		POM parse(Path path) throws IOException;
+	}
+	
+	private record Key(Path path, String entry, long size, long modified) {}
+	
+	private final Map<Key, POM> poms;
+
+	@SuppressWarnings("serial")
+	PomCache(int maxEntries) {
+		poms = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, POM> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Get the POM parsed from a file (or an entry in a file), parsing it only if it is not 
+	 * cached or has changed since it was cached.
+	 * 
+	 * @param path file
+	 * @param entry entry in file, or empty string for the file itself
+	 * @param parser parses the file if needed
+	 * @return pom
+	 */
+	POM get(Path path, String entry, Parser parser) {
+		try {
+			var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			var key = new Key(path.toAbsolutePath().normalize(), entry, attrs.size(), attrs.lastModifiedTime().toMillis());
+			synchronized(poms) {
+				var pom = poms.get(key);
+				if(pom != null) {
+					return pom;
+				}
+			}
+			
+			/* Parse outside of the lock, at worst the same file is parsed twice */
+			var pom = parser.parse(path);
+			synchronized(poms) {
+				poms.put(key, pom);
+			}
+			return pom;
+		}
+		catch(IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+}
@@ -24,16 +24,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.NoSuchFileException;
+import java.text.MessageFormat;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.Http;
 import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
 import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.RemoteRepository.UpdatePolicy;
 import com.sshtools.bootlace.api.ResolutionMonitor;
+import com.sshtools.bootlace.platform.SnapshotMetaData.SnapshotVersion;
 
 public final class RemoteRepositoryImpl implements RemoteRepository {
 
@@ -43,6 +49,9 @@ public final class RemoteRepositoryImpl implements RemoteRepository {
 		private String id = "central";
 		private Optional<Boolean> releases = Optional.empty();
 		private Optional<Boolean> snapshots  = Optional.empty();
+		private UpdatePolicy updatePolicy = UpdatePolicy.DAILY;
+		private Optional<NegativeCache> negativeCache = Optional.empty();
+		private Optional<SnapshotCache> snapshotCache = Optional.empty();
 
 		@Override
 		public RemoteRepositoryBuilder withName(String name) {
@@ -83,18 +92,56 @@ public final class RemoteRepositoryImpl implements RemoteRepository {
 			this.snapshots = Optional.of(snapshots);
 			return this;
 		}
+
+		@Override
+		public RemoteRepositoryBuilder withUpdatePolicy(UpdatePolicy updatePolicy) {
+			this.updatePolicy = updatePolicy;
+			return this;
+		}
+
+		/**
+		 * Use a particular cache of missing artifacts, i.e. the one in the root layer's 
+		 * cache directory. If not set, the one in the default cache directory is used.
+		 * 
+		 * @param negativeCache cache of missing artifacts
+		 * @return this for chaining
+		 */
+		RemoteRepositoryBuilder withNegativeCache(NegativeCache negativeCache) {
+			this.negativeCache = Optional.of(negativeCache);
+			return this;
+		}
+
+		/**
+		 * Use a particular cache of snapshot metadata, i.e. the one in the root layer's 
+		 * cache directory. If not set, the one in the default cache directory is used.
+		 * 
+		 * @param snapshotCache cache of snapshot metadata
+		 * @return this for chaining
+		 */
+		RemoteRepositoryBuilder withSnapshotCache(SnapshotCache snapshotCache) {
+			this.snapshotCache = Optional.of(snapshotCache);
+			return this;
+		}
 	}
 
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+
 	private final URI root;
 	private final String name;
 	private final String id;
 	private final boolean releases;
 	private final boolean snapshots;
+	private final UpdatePolicy updatePolicy;
+	private final NegativeCache negativeCache;
+	private final SnapshotCache snapshotCache;
 
 	public RemoteRepositoryImpl(RemoteRepositoryBuilder builder) {
 		this.root = builder.root;
 		this.name = builder.name;
 		this.id = builder.id;
+		this.updatePolicy = builder.updatePolicy;
+		this.negativeCache = builder.negativeCache.orElseGet(NegativeCache::get);
+		this.snapshotCache = builder.snapshotCache.orElseGet(SnapshotCache::get);
 		
 		releases = builder.releases.orElse(builder.snapshots.isEmpty());
 		snapshots = builder.snapshots.orElse(builder.releases.isEmpty());
@@ -116,6 +163,10 @@ public final class RemoteRepositoryImpl implements RemoteRepository {
 				+ gav.artifactId() + '/' + gav.version() + '/' + gav.artifactId() + "-" + gav.version() + ".jar")));
 	}
 
+	URI root() {
+		return root;
+	}
+
 	static String dottedToPath(String dotted) {
 		return dotted.replace('.', File.separatorChar);
 	}
@@ -128,55 +179,72 @@ public final class RemoteRepositoryImpl implements RemoteRepository {
 	@Override
 	public InputStream download(HttpClientFactory httpClientFactory, GAV gav, URI uri, ResolutionResult result,
 			Optional<ResolutionMonitor> monitor) throws IOException {
+		return download(httpClientFactory, gav, uri, result, monitor, 0, Optional.empty()).in();
+	}
+
+	@Override
+	public Download download(HttpClientFactory httpClientFactory, GAV gav, URI uri, ResolutionResult result,
+			Optional<ResolutionMonitor> monitor, long offset, Optional<String> validator) throws IOException {
 		
 		if((gav.isSnapshot() && !snapshots) ||
 		   (!gav.isSnapshot() && !releases)) {
 			throw new NoSuchFileException(uri.toString());
 		}
 		
-		var httpClient = httpClientFactory.get().build();
+		var missing = negativeCache;
+		var requested = gav;
+		if(missing.isMissing(id, requested, updatePolicy)) {
+			throw new NoSuchFileException(uri.toString(), null, "Previously not found in " + id);
+		}
+		
+		var httpClient = httpClientFactory.client(root);
 		
 		if(gav.isSnapshot() && !gav.isResolved()) {
-			var metaUri = uri.resolve("maven-metadata.xml");
-			var request = HttpRequest.newBuilder().
-					GET().
-					uri(metaUri).
-					header("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:123.0) Gecko/20100101 Firefox/123.0").
-					build();
-			System.out.println(metaUri);
-			var handler = HttpResponse.BodyHandlers.ofInputStream();
-			try {
-				var response = httpClient.send(request, handler);
-				switch (response.statusCode()) {
-				case 200:
-					try(var in = response.body()) {
-						var meta = SnapshotMetaData.of(in);
-						uri = uri.resolve(meta.latestJarFilename());
-						gav = gav.toWithVersion(meta.latestJarVersion());
-					}
-					break;
-				case 404:
-					throw new NoSuchFileException(metaUri.toString());
-				default:
-					throw new IOException("Unexpected status " + response.statusCode() + " for " + metaUri);
-				}
-			} catch (InterruptedException e) {
-				throw new IllegalStateException(e);
-			}
+			var meta = snapshot(httpClientFactory, gav, uri);
+			uri = uri.resolve(meta.latestJarFilename());
+			gav = gav.toWithVersion(meta.latestJarVersion());
 		}
 		
 		var fUri = uri;
 		var fGav = gav;
 		
-		var request = HttpRequest.newBuilder().GET().uri(fUri).build();
+		var requestBuilder = httpClientFactory.request(fUri).GET();
+		var resume = offset > 0 && validator.isPresent();
+		if(resume) {
+			requestBuilder.header("Range", "bytes=" + offset + "-");
+			requestBuilder.header("If-Range", validator.get());
+		}
+		var request = requestBuilder.build();
 		var handler = HttpResponse.BodyHandlers.ofInputStream();
+		var evt = new BootlaceEvents.ArtifactDownload();
+		evt.begin();
 		try {
 			var response = httpClient.send(request, handler);
+			evt.commitIfEnabled(fGav, fUri, id, response.statusCode(), Http.contentLength(response).orElse(-1l));
+			var newValidator = response.headers().firstValue("ETag").or(() -> response.headers().firstValue("Last-Modified"));
 			switch (response.statusCode()) {
 			case 200:
+				missing.found(id, requested);
 				monitor.ifPresent(m -> m.found(fGav, fUri, this, Http.contentLength(response)));
-				return response.body();
+				return new Download(response.body(), fUri, 0, Http.contentLength(response), newValidator);
+			case 206:
+				var range = response.headers().firstValue("Content-Range").orElse("");
+				if(!resume || !range.startsWith("bytes " + offset + "-")) {
+					response.body().close();
+					throw new IOException("Unexpected range `" + range + "` for " + fUri);
+				}
+				var idx = range.indexOf('/');
+				var length = idx == -1 || range.endsWith("*") 
+						? Optional.<Long>empty() 
+						: Optional.of(Long.parseLong(range.substring(idx + 1)));
+				monitor.ifPresent(m -> m.found(fGav, fUri, this, length));
+				return new Download(response.body(), fUri, offset, length, newValidator.or(() -> validator));
+			case 416:
+				/* Partial download is no longer valid, start again */
+				response.body().close();
+				return download(httpClientFactory, gav, uri, result, monitor, 0, Optional.empty());
 			case 404:
+				missing.missing(id, requested);
 				throw new NoSuchFileException(fUri.toString());
 			default:
 				throw new IOException("Unexpected status " + response.statusCode() + " for " + fUri);
@@ -186,6 +254,119 @@ public final class RemoteRepositoryImpl implements RemoteRepository {
 		}
 	}
 
+	@Override
+	public Optional<String> snapshotVersion(HttpClientFactory httpClientFactory, GAV gav) throws IOException {
+		if(!gav.isSnapshot() || gav.isResolved() || !snapshots) {
+			return Optional.empty();
+		}
+		var result = resolve(httpClientFactory, gav);
+		if(result.isEmpty() || negativeCache.isMissing(id, gav, updatePolicy)) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(snapshot(httpClientFactory, gav, result.get().uri()).latestJarVersion());
+		}
+		catch(NoSuchFileException nsfe) {
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public InputStream pom(HttpClientFactory httpClientFactory, GAV gav) throws IOException {
+		var result = resolve(httpClientFactory, gav);
+		if(result.isEmpty()) {
+			throw new NoSuchFileException(gav.toString());
+		}
+		
+		/* Missing POMs are remembered separately from missing jars */
+		var missing = negativeCache;
+		var pomGav = new GAV.Builder().
+				withGroupId(gav.groupIdOr()).
+				withArtifactId(gav.artifactId()).
+				withVersion(gav.versionOr()).
+				withClassifier("pom").
+				build();
+		if(missing.isMissing(id, pomGav, updatePolicy)) {
+			throw new NoSuchFileException(gav.toString(), null, "Previously not found in " + id);
+		}
+		
+		var jarUri = result.get().uri();
+		var version = gav.version();
+		if(gav.isSnapshot() && !gav.isResolved()) {
+			var meta = snapshot(httpClientFactory, gav, jarUri);
+			version = meta.find("", "pom").map(SnapshotVersion::value).orElseGet(meta::latestJarVersion);
+		}
+		var uri = jarUri.resolve(gav.artifactId() + "-" + version + ".pom");
+		
+		var request = httpClientFactory.request(uri).GET().build();
+		try {
+			var response = httpClientFactory.client(root).send(request, HttpResponse.BodyHandlers.ofInputStream());
+			switch (response.statusCode()) {
+			case 200:
+				missing.found(id, pomGav);
+				return response.body();
+			case 404:
+				response.body().close();
+				missing.missing(id, pomGav);
+				throw new NoSuchFileException(uri.toString());
+			default:
+				response.body().close();
+				throw new IOException("Unexpected status " + response.statusCode() + " for " + uri);
+			}
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private SnapshotMetaData snapshot(HttpClientFactory httpClientFactory, GAV gav, URI uri) throws IOException {
+		var metaUri = uri.resolve("maven-metadata.xml");
+		try {
+			var meta = snapshotCache.metadata(httpClientFactory, httpClientFactory.client(root), id, updatePolicy, gav, metaUri);
+			negativeCache.found(id, gav);
+			return meta;
+		}
+		catch(NoSuchFileException nsfe) {
+			negativeCache.missing(id, gav);
+			throw nsfe;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Optional<Checksum>> checksum(HttpClientFactory httpClientFactory, URI uri) {
+		var sha256 = fetchChecksum(httpClientFactory, uri, "SHA-256", ".sha256", 64);
+		var sha1 = fetchChecksum(httpClientFactory, uri, "SHA-1", ".sha1", 40);
+		return sha256.thenCombine(sha1, (a, b) -> a.or(() -> b));
+	}
+
+	private CompletableFuture<Optional<Checksum>> fetchChecksum(HttpClientFactory httpClientFactory, URI uri, String algorithm, String extension, int length) {
+		var request = httpClientFactory.request(URI.create(uri.toString() + extension)).GET().build();
+		return httpClientFactory.client(root).sendAsync(request, HttpResponse.BodyHandlers.ofString()).
+				thenApply(response -> {
+					switch(response.statusCode()) {
+					case 200:
+						/* Some repositories follow the checksum with the file name */
+						var value = response.body().trim().split("\\s+")[0].toLowerCase();
+						if(value.length() == length && value.chars().allMatch(c -> Character.digit(c, 16) != -1)) {
+							return Optional.of(new Checksum(algorithm, value));
+						}
+						LOG.warning("Ignoring malformed {0} checksum published for {1}", algorithm, uri);
+						return Optional.<Checksum>empty();
+					case 404:
+						if(LOG.debug()) {
+							LOG.debug("No {0} checksum is published for {1}", algorithm, uri);
+						}
+						return Optional.<Checksum>empty();
+					default:
+						LOG.warning("Could not fetch {0} checksum for {1}, status {2}. It will not be verified against it.", algorithm, uri, response.statusCode());
+						return Optional.<Checksum>empty();
+					}
+				}).
+				exceptionally(e -> {
+					LOG.warning(MessageFormat.format("Could not fetch {0} checksum for {1}. It will not be verified against it.", algorithm, uri), e);
+					return Optional.empty();
+				});
+	}
+
 	@Override
 	public String id() {
 		return id;
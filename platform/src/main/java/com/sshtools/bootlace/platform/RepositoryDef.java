@@ -23,7 +23,12 @@ package com.sshtools.bootlace.platform;
 import java.net.URI;
 import java.util.Optional;
 
+import com.sshtools.bootlace.api.RemoteRepository.UpdatePolicy;
 import com.sshtools.bootlace.api.Repository;
 
-public record RepositoryDef(Class<? extends Repository> type, String id, String name, URI root, Optional<Boolean> releases, Optional<Boolean> snapshots) {
+public record RepositoryDef(Class<? extends Repository> type, String id, String name, URI root, Optional<Boolean> releases, Optional<Boolean> snapshots, Optional<UpdatePolicy> updatePolicy) {
+	
+	public RepositoryDef(Class<? extends Repository> type, String id, String name, URI root, Optional<Boolean> releases, Optional<Boolean> snapshots) {
+		this(type, id, name, root, releases, snapshots, Optional.empty());
+	}
 }
@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+
+/**
+ * Remembers the latest versions found in the <code>maven-metadata-local.xml</code> of
+ * local file system repositories, so that later lookups and later boots do not need to
+ * parse them again.
+ * <p>
+ * Each entry is stamped with the modification time of the metadata file it was read 
+ * from, and is only trusted while that stamp is unchanged. Entries whose stamp is too
+ * recent to be reliable on file systems with coarse timestamps are always checked again,
+ * and entries for metadata that no longer exists are dropped. Each root layer has its
+ * own index, kept in <code>index.properties</code> in its configured cache directory.
+ * <p>
+ * Whether artifacts exist is not indexed, checking the index would cost the same 
+ * <code>stat</code> as checking the file.
+ */
+final class RepositoryIndex {
+	private final static Log LOG = Logs.of(BootLog.RESOLUTION);
+	
+	/* File systems with coarse timestamps may not see a change within this window */
+	private final static long RACY_MS = 2000;
+	
+	private final static String LATEST = "latest:";
+	
+	/* Only used by repositories built outside of a root layer */
+	private final static class Default {
+		private final static RepositoryIndex DEFAULT = new RepositoryIndex(Bootlace.defaultCacheDirectory().resolve("index.properties"));
+	}
+	
+	static RepositoryIndex get() {
+		return Default.DEFAULT;
+	}
+	
+	@FunctionalInterface
+	interface VersionReader {
+		Optional<String> read(Path metadata) throws IOException;
+	}
+	
+	private record Entry(long stamp, String value) {
+		
+		static Optional<Entry> parse(String text) {
+			var idx = text.indexOf('|');
+			try {
+				return idx == -1 ? Optional.empty() : Optional.of(new Entry(Long.parseLong(text.substring(0, idx)), text.substring(idx + 1)));
+			}
+			catch(NumberFormatException nfe) {
+				return Optional.empty();
+			}
+		}
+		
+		boolean valid(long stamp) {
+			return this.stamp == stamp && ( stamp == -1 || System.currentTimeMillis() - stamp > RACY_MS);
+		}
+		
+		@Override
+		public String toString() {
+			return stamp + "|" + value;
+		}
+	}
+	
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	RepositoryIndex(Path file) {
+		this.file = file;
+		load();
+	}
+	
+	/**
+	 * Get the latest version recorded in a repository metadata file. The file is only
+	 * read if it has changed since it was last read.
+	 * 
+	 * @param metadata metadata file
+	 * @param reader reads the version from the metadata file if needed
+	 * @return latest version, or empty if there is no metadata file 
+	 * @throws IOException on error
+	 */
+	Optional<String> latest(Path metadata, VersionReader reader) throws IOException {
+		var key = LATEST + metadata.toAbsolutePath().normalize();
+		var stamp = stamp(metadata);
+		if(stamp == -1) {
+			if(entries.remove(key) != null) {
+				dirty = true;
+			}
+			return Optional.empty();
+		}
+		var entry = entries.get(key);
+		if(entry != null && entry.valid(stamp)) {
+			return Optional.of(entry.value());
+		}
+		var version = reader.read(metadata);
+		version.ifPresent(v -> put(key, new Entry(stamp, v)));
+		return version;
+	}
+	
+	/**
+	 * Write the index if it has changed.
+	 */
+	void save() {
+		if(!dirty) {
+			return;
+		}
+		synchronized(this) {
+			dirty = false;
+			var props = new Properties();
+			entries.forEach((k, v) -> props.setProperty(k, v.toString()));
+			try {
+				Files.createDirectories(file.getParent());
+				var tmp = Files.createTempFile(file.getParent(), "index", ".tmp");
+				try {
+					try(var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+						props.store(out, "Bootlace repository index");
+					}
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				finally {
+					Files.deleteIfExists(tmp);
+				}
+			}
+			catch(IOException ioe) {
+				LOG.warning(MessageFormat.format("Failed to write repository index {0}", file), ioe);
+			}
+		}
+	}
+	
+	private void put(String key, Entry entry) {
+		if(!entry.equals(entries.put(key, entry))) {
+			dirty = true;
+		}
+	}
+	
+	private void load() {
+		if(Files.exists(file)) {
+			var props = new Properties();
+			try(var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				props.load(in);
+			}
+			catch(IOException | IllegalArgumentException e) {
+				LOG.warning(MessageFormat.format("Ignoring unreadable repository index {0}", file), e);
+				return;
+			}
+			props.forEach((k, v) -> {
+				if(((String)k).startsWith(LATEST)) {
+					Entry.parse((String)v).ifPresent(e -> entries.put((String)k, e));
+				}
+				else {
+					/* From older versions that also indexed artifacts */
+					dirty = true;
+				}
+			});
+		}
+	}
+	
+	private static long stamp(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+		}
+		catch(IOException ioe) {
+			return -1;
+		}
+	}
+}
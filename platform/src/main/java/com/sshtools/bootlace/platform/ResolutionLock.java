@@ -0,0 +1,341 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.sshtools.bootlace.api.ArtifactRef;
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.platform.DefaultModuleParameters.DefaultModuleParametersBuilder;
+import com.sshtools.bootlace.platform.RootLayerImpl.RootContextImpl;
+
+/**
+ * The result of expanding the artifacts of a {@link DefaultLayerImpl}, written after a 
+ * successful resolution so that following boots may skip expansion entirely. 
+ * <p>
+ * A lock is only trusted when the fingerprint of the layer's definition is the same as 
+ * when it was written, every artifact is still present with the same size and modification
+ * time, and the same artifacts are (or are not) already loaded in higher layers. As well
+ * as the final artifacts, the lock records the changes contributed descriptors made to the 
+ * layer (parents, repositories and module parameters), so these can be replayed.
+ * <p>
+ * Layers with directory artifacts (usually developer class output directories) are never
+ * locked, as their contents may change without their attributes changing. Nor are layers
+ * that resolved an unversioned or <code>SNAPSHOT</code> artifact from a repository, as
+ * a newer build may have been installed or deployed since, which only a full expansion
+ * would find. Such artifacts given an explicit path in the layer definition are fine, as
+ * their attributes are checked.
+ */
+final class ResolutionLock {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	private final static int FORMAT = 2;
+
+	record LockedArtifact(ArtifactRef ref, long size, long lastModified, String sha256) {
+	}
+
+	private final String inputs;
+	private final List<LockedArtifact> artifacts;
+	private final List<GAV> loaded;
+	private final List<GAV> skipped;
+	private final List<String> parents;
+	private final List<String> appRepositories;
+	private final List<String> localRepositories;
+	private final List<String> remoteRepositories;
+	private final Optional<List<String>> nativeModules;
+
+	private ResolutionLock(String inputs, List<LockedArtifact> artifacts, List<GAV> loaded, List<GAV> skipped,
+			List<String> parents, List<String> appRepositories, List<String> localRepositories,
+			List<String> remoteRepositories, Optional<List<String>> nativeModules) {
+		this.inputs = inputs;
+		this.artifacts = artifacts;
+		this.loaded = loaded;
+		this.skipped = skipped;
+		this.parents = parents;
+		this.appRepositories = appRepositories;
+		this.localRepositories = localRepositories;
+		this.remoteRepositories = remoteRepositories;
+		this.nativeModules = nativeModules;
+	}
+
+	/**
+	 * Create a lock from a layer that has just been expanded.
+	 * 
+	 * @param inputs fingerprint of the layer before expansion
+	 * @param layer layer, after expansion
+	 * @param finalArtifacts final artifacts
+	 * @param loaded artifacts registered with the root context by the expansion
+	 * @param skipped artifacts skipped because they were already loaded in a higher layer
+	 * @return lock, or empty if the layer may not be locked
+	 */
+	static Optional<ResolutionLock> of(String inputs, DefaultLayerImpl layer, Collection<ArtifactRef> finalArtifacts,
+			List<GAV> loaded, List<GAV> skipped) throws IOException {
+		var declared = layer.artifacts().stream().
+				map(ArtifactRef::path).
+				flatMap(Optional::stream).
+				map(Path::toAbsolutePath).
+				collect(Collectors.toSet());
+		var locked = new ArrayList<LockedArtifact>();
+		for(var ref : finalArtifacts) {
+			if(ref.path().isEmpty()) {
+				return Optional.empty();
+			}
+			var path = ref.path().get();
+			var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			if(attrs.isDirectory()) {
+				LOG.debug("Layer `{0}` has directory artifact {1}, so cannot be locked", layer.id(), path);
+				return Optional.empty();
+			}
+			if(floating(ref.gav()) && !declared.contains(path.toAbsolutePath())) {
+				LOG.debug("Layer `{0}` has unversioned or snapshot artifact {1}, so cannot be locked", layer.id(), ref.gav());
+				return Optional.empty();
+			}
+			locked.add(new LockedArtifact(ref, attrs.size(), attrs.lastModifiedTime().toMillis(), Checksums.sha256(path)));
+		}
+		return Optional.of(new ResolutionLock(inputs, locked, List.copyOf(loaded), List.copyOf(skipped), 
+				List.copyOf(layer.parents), List.copyOf(layer.appRepositories), List.copyOf(layer.localRepositories), 
+				List.copyOf(layer.remoteRepositories), layer.moduleParameters().map(mp -> List.copyOf(mp.nativeModules()))));
+	}
+
+	/**
+	 * Fingerprint the parts of a layer definition that affect how it's artifacts are 
+	 * expanded. This must be called before expansion.
+	 * 
+	 * @param layer layer
+	 * @param baseDir base directory
+	 * @return fingerprint
+	 */
+	static String inputs(DefaultLayerImpl layer, Path baseDir) {
+		var digest = digest();
+		update(digest, String.valueOf(FORMAT));
+		update(digest, layer.id());
+		update(digest, baseDir.toAbsolutePath().toString());
+		layer.artifacts().forEach(a -> update(digest, a.toString()));
+		update(digest, "parents");
+		layer.parents.forEach(p -> update(digest, p));
+		update(digest, "app");
+		layer.appRepositories.forEach(r -> update(digest, r));
+		update(digest, "local");
+		layer.localRepositories.forEach(r -> update(digest, r));
+		update(digest, "remote");
+		layer.remoteRepositories.forEach(r -> update(digest, r));
+		update(digest, "native");
+		layer.moduleParameters().ifPresent(mp -> mp.nativeModules().forEach(m -> update(digest, m)));
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	static Optional<ResolutionLock> load(Path file) {
+		if(!Files.exists(file)) {
+			return Optional.empty();
+		}
+		var props = new Properties();
+		try(var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			props.load(in);
+			if(Integer.parseInt(props.getProperty("format", "0")) != FORMAT) {
+				return Optional.empty();
+			}
+			
+			var artifacts = new ArrayList<LockedArtifact>();
+			var count = Integer.parseInt(props.getProperty("artifacts"));
+			for(int i = 0 ; i < count; i++) {
+				var prefix = "artifact." + i + ".";
+				artifacts.add(new LockedArtifact(
+					ArtifactRef.of(GAV.ofSpec(props.getProperty(prefix + "gav")), Path.of(props.getProperty(prefix + "path"))),
+					Long.parseLong(props.getProperty(prefix + "size")),
+					Long.parseLong(props.getProperty(prefix + "modified")),
+					props.getProperty(prefix + "sha256")
+				));
+			}
+			
+			return Optional.of(new ResolutionLock(
+				props.getProperty("inputs"),
+				artifacts,
+				readList(props, "loaded").stream().map(GAV::ofSpec).toList(),
+				readList(props, "skipped").stream().map(GAV::ofSpec).toList(),
+				readList(props, "parent"),
+				readList(props, "app-repository"),
+				readList(props, "local-repository"),
+				readList(props, "remote-repository"),
+				props.containsKey("native") ? Optional.of(readList(props, "native")) : Optional.empty()
+			));
+		}
+		catch(IOException | RuntimeException e) {
+			LOG.warning(MessageFormat.format("Ignoring unreadable resolution lock {0}", file), e);
+			return Optional.empty();
+		}
+	}
+
+	void write(Path file) throws IOException {
+		var props = new Properties();
+		props.setProperty("format", String.valueOf(FORMAT));
+		props.setProperty("inputs", inputs);
+		props.setProperty("artifacts", String.valueOf(artifacts.size()));
+		for(int i = 0 ; i < artifacts.size(); i++) {
+			var prefix = "artifact." + i + ".";
+			var art = artifacts.get(i);
+			props.setProperty(prefix + "gav", art.ref().gav().toString());
+			props.setProperty(prefix + "path", art.ref().path().get().toString());
+			props.setProperty(prefix + "size", String.valueOf(art.size()));
+			props.setProperty(prefix + "modified", String.valueOf(art.lastModified()));
+			props.setProperty(prefix + "sha256", art.sha256());
+		}
+		writeList(props, "loaded", loaded.stream().map(GAV::toString).toList());
+		writeList(props, "skipped", skipped.stream().map(GAV::toString).toList());
+		writeList(props, "parent", parents);
+		writeList(props, "app-repository", appRepositories);
+		writeList(props, "local-repository", localRepositories);
+		writeList(props, "remote-repository", remoteRepositories);
+		nativeModules.ifPresent(nm -> writeList(props, "native", nm));
+		
+		Files.createDirectories(file.getParent());
+		var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try(var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				props.store(out, "Bootlace resolution lock, do not edit");
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Get if this lock may be used instead of expanding the layer.
+	 * 
+	 * @param inputs fingerprint of the layer as it is now 
+	 * @param loadedAbove whether an artifact is already loaded in a higher layer
+	 * @return valid
+	 */
+	boolean valid(String inputs, Predicate<GAV> loadedAbove) {
+		if(!this.inputs.equals(inputs)) {
+			LOG.debug("Layer definition has changed since it was locked");
+			return false;
+		}
+		for(var art : artifacts) {
+			var path = art.ref().path().get();
+			try {
+				var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+				if(attrs.size() != art.size() || attrs.lastModifiedTime().toMillis() != art.lastModified()) {
+					LOG.debug("Locked artifact {0} has changed", path);
+					return false;
+				}
+				if(Checksums.recorded(path).filter(sha -> !sha.equals(art.sha256())).isPresent()) {
+					LOG.debug("Locked artifact {0} has a different verified checksum", path);
+					return false;
+				}
+			}
+			catch(IOException ioe) {
+				LOG.debug("Locked artifact {0} is missing", path);
+				return false;
+			}
+		}
+		if(loaded.stream().anyMatch(loadedAbove) || !skipped.stream().allMatch(loadedAbove)) {
+			LOG.debug("Artifacts loaded in higher layers have changed since it was locked");
+			return false;
+		}
+		return true;
+	}
+
+	List<GAV> loaded() {
+		return loaded;
+	}
+
+	/**
+	 * Apply the same changes to the layer and root context that expansion did.
+	 * 
+	 * @param layer layer
+	 * @param rootContext root context
+	 * @return final artifacts
+	 */
+	Set<ArtifactRef> apply(DefaultLayerImpl layer, RootContextImpl rootContext) {
+		layer.parents.addAll(parents);
+		layer.appRepositories.addAll(appRepositories);
+		layer.localRepositories.addAll(localRepositories);
+		layer.remoteRepositories.addAll(remoteRepositories);
+		nativeModules.ifPresent(nm -> {
+			layer.moduleParameters = Optional.of(new DefaultModuleParametersBuilder().
+					fromParameters(layer.moduleParameters).
+					addNativeModules(nm).
+					build());
+		});
+		loaded.forEach(rootContext::addArtifact);
+		
+		var refs = new LinkedHashSet<ArtifactRef>();
+		artifacts.forEach(a -> refs.add(a.ref()));
+		return refs;
+	}
+
+	private static boolean floating(GAV gav) {
+		return !gav.hasVersion() || gav.isSnapshot();
+	}
+
+	private static List<String> readList(Properties props, String key) {
+		var count = Integer.parseInt(props.getProperty(key, "0"));
+		var list = new ArrayList<String>(count);
+		for(int i = 0 ; i < count; i++) {
+			list.add(props.getProperty(key + "." + i));
+		}
+		return list;
+	}
+
+	private static void writeList(Properties props, String key, Collection<String> values) {
+		props.setProperty(key, String.valueOf(values.size()));
+		var i = 0;
+		for(var value : values) {
+			props.setProperty(key + "." + (i++), value);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte)0);
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
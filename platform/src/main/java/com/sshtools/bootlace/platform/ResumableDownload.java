@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.Optional;
+
+import com.sshtools.bootlace.api.Exceptions.ChecksumMismatch;
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.Repository.ResolutionResult;
+import com.sshtools.bootlace.api.ResolutionMonitor;
+
+/**
+ * Downloads an artifact to a partial file, retrying with exponential backoff if the 
+ * download fails. Each retry, or a download started again after a restart, resumes from 
+ * the end of the partial file as long as the artifact still has the same validator 
+ * (<code>ETag</code> or <code>Last-Modified</code>), which is kept next to the partial file.
+ * <p>
+ * The artifact is digested as it is written, and verified against the checksum published
+ * by the repository, which is fetched while the artifact downloads.
+ */
+final class ResumableDownload {
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	private final static int ATTEMPTS = 5;
+	private final static long INITIAL_BACKOFF = 500;
+	private final static long MAX_BACKOFF = 30000;
+
+	private final RemoteRepository remoteRepository;
+	private final HttpClientFactory httpClientFactory;
+	private final GAV gav;
+	private final URI uri;
+	private final ResolutionResult result;
+	private final Optional<ResolutionMonitor> monitor;
+	private final Path partial;
+	private final Path validatorFile;
+	private String sha256;
+
+	ResumableDownload(RemoteRepository remoteRepository, HttpClientFactory httpClientFactory, GAV gav, URI uri,
+			ResolutionResult result, Optional<ResolutionMonitor> monitor, Path partial) {
+		this.remoteRepository = remoteRepository;
+		this.httpClientFactory = httpClientFactory;
+		this.gav = gav;
+		this.uri = uri;
+		this.result = result;
+		this.monitor = monitor;
+		this.partial = partial;
+		this.validatorFile = partial.resolveSibling(partial.getFileName() + ".validator");
+	}
+
+	/**
+	 * Download the artifact, or the rest of it, to the partial file.
+	 * 
+	 * @return bytes transferred
+	 * @throws IOException on error
+	 */
+	long download() throws IOException {
+		var backoff = INITIAL_BACKOFF;
+		for(var attempt = 1; ; attempt++) {
+			try {
+				return attempt();
+			}
+			catch(NoSuchFileException | ChecksumMismatch e) {
+				throw e;
+			}
+			catch(IOException ioe) {
+				if(attempt == ATTEMPTS) {
+					throw ioe;
+				}
+				LOG.warning("Download of {0} failed ({1}), attempt {2} of {3}, retrying in {4}ms", gav, ioe.getMessage(), attempt, ATTEMPTS, backoff);
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw ioe;
+				}
+				backoff = Math.min(backoff * 2, MAX_BACKOFF);
+			}
+		}
+	}
+
+	private long attempt() throws IOException {
+		var offset = 0l;
+		var validator = Optional.<String>empty();
+		if(Files.exists(partial) && Files.exists(validatorFile)) {
+			offset = Files.size(partial);
+			validator = Optional.of(Files.readString(validatorFile, StandardCharsets.UTF_8));
+			LOG.info("Resuming download of {0} from {1} bytes", gav, offset);
+		}
+		
+		var download = remoteRepository.download(httpClientFactory, gav, uri, result, monitor, offset, validator);
+		var checksum = remoteRepository.checksum(httpClientFactory, download.uri());
+		var start = download.offset();
+		var total = start;
+		var digests = new Checksums.Digests();
+		
+		try(var in = Channels.newChannel(download.in())) {
+			Files.createDirectories(partial.getParent());
+			
+			/* Validator must be written first, a partial file without one is never resumed */
+			if(download.validator().isPresent()) {
+				Files.writeString(validatorFile, download.validator().get(), StandardCharsets.UTF_8);
+			}
+			else {
+				Files.deleteIfExists(validatorFile);
+			}
+			
+			if(start > 0) {
+				/* Only the part already downloaded is read back */
+				digests.update(partial);
+			}
+			
+			try(var out = start == 0 
+					? FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) 
+					: FileChannel.open(partial, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				var buf = ByteBuffer.allocateDirect(Checksums.BUFFER_SIZE);
+				while(in.read(buf) != -1) {
+					buf.flip();
+					digests.update(buf);
+					total += buf.remaining();
+					while(buf.hasRemaining()) {
+						out.write(buf);
+					}
+					buf.clear();
+					var bytes = total;
+					monitor.ifPresent(m -> m.downloading(gav, uri, remoteRepository, Optional.of(bytes)));
+				}
+			}
+		}
+		
+		if(download.length().isPresent() && download.length().get() != total) {
+			throw new IOException(MessageFormat.format("Download of {0} ended after {1} of {2} bytes.", gav, total, download.length().get()));
+		}
+		
+		try {
+			sha256 = digests.verify(gav, download.uri(), checksum.join());
+		}
+		catch(ChecksumMismatch cm) {
+			Files.deleteIfExists(partial);
+			Files.deleteIfExists(validatorFile);
+			throw cm;
+		}
+		
+		Files.deleteIfExists(validatorFile);
+		return total - start;
+	}
+	
+	/**
+	 * Get the verified SHA-256 digest of the downloaded artifact.
+	 * 
+	 * @return digest
+	 */
+	String sha256() {
+		return sha256;
+	}
+}
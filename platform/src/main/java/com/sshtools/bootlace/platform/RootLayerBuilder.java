@@ -22,12 +22,19 @@ package com.sshtools.bootlace.platform;
 
 import static java.lang.String.format;
 
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import com.sshtools.bootlace.api.ArtifactVersion;
 import com.sshtools.bootlace.api.BootContext;
@@ -50,6 +57,26 @@ public final class RootLayerBuilder extends AbstractLayerBuilder<RootLayerBuilde
 			ArtifactVersion.getVersion("com.sshtools", "bootlace-platform"), "bootlace");
 	Optional<PluginInitializer> pluginInitializer = Optional.empty();
 	Optional<PluginDestroyer> pluginDestroyer = Optional.empty();
+	boolean parallelBoot;
+	int bootThreads = Runtime.getRuntime().availableProcessors();
+	Optional<Path> cacheDirectory = Optional.empty();
+	boolean moduleCache = true;
+	boolean resolutionLocks = true;
+	boolean classTraining;
+	boolean classPreload = true;
+	Optional<Consumer<RootLayerBuilder>> restartSource = Optional.empty();
+	boolean parallelShutdown = true;
+	Duration shutdownTimeout = Duration.ofSeconds(30);
+	Duration pluginShutdownTimeout = Duration.ofSeconds(10);
+	int downloadThreads = 4;
+	boolean hedgedDownloads;
+	int hedgePercentile = 95;
+	HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+	Duration httpConnectTimeout = Duration.ofSeconds(10);
+	Optional<Duration> httpRequestTimeout = Optional.of(Duration.ofSeconds(30));
+	Optional<Executor> httpExecutor = Optional.empty();
+	boolean closeHttpExecutor;
+	boolean resolveOnly;
 
 	RootLayerBuilder() {
 		this("_app_");
@@ -64,11 +91,27 @@ public final class RootLayerBuilder extends AbstractLayerBuilder<RootLayerBuilde
 		return new RootLayerImpl(this);
 	}
 
+	/**
+	 * Resolve, download and expand the artifacts of every layer, including lazy and deferred
+	 * layers and those found in extension directories, without creating any module layers 
+	 * or instantiating any plugins. Resolution locks and the repository index are written 
+	 * just as they would be by a boot, so a following boot with the same configuration 
+	 * needs no network access. All resources are released before returning.
+	 */
+	public void prepare() {
+		resolveOnly = true;
+		var root = new RootLayerImpl(this);
+		root.shutdown();
+	}
+
 	public RootLayerBuilder fromStandardArguments(String... args) {
-		if (args.length == 0)
+		if (args.length == 0) {
 			fromINIResource();
+			withRestartSource(RootLayerBuilder::fromINIResource);
+		}
 		else if (args.length == 1 && !args[0].startsWith("--")) {
 			fromINI(args[0]);
+			withRestartSource(b -> b.fromINI(args[0]));
 		} else
 			throw new IllegalArgumentException("A single argument is supported, the path to a layers.ini file.");
 
@@ -114,6 +157,20 @@ public final class RootLayerBuilder extends AbstractLayerBuilder<RootLayerBuilde
 		return this;
 	}
 
+	/**
+	 * Set where layer definitions are read from when the root context is restarted. The
+	 * consumer is given a fresh builder to configure, and only the layers whose definitions
+	 * or artifacts have changed since boot are re-opened. Without a restart source, the
+	 * root context cannot be restarted.
+	 * 
+	 * @param restartSource restart source
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withRestartSource(Consumer<RootLayerBuilder> restartSource) {
+		this.restartSource = Optional.of(restartSource);
+		return this;
+	}
+
 	public RootLayerBuilder withPluginHostInfo(PluginHostInfo pluginHostInfo) {
 		this.pluginHostInfo = pluginHostInfo;
 		return this;
@@ -165,12 +222,238 @@ public final class RootLayerBuilder extends AbstractLayerBuilder<RootLayerBuilde
 		return this;
 	}
 
+	public RootLayerBuilder withParallelBoot() {
+		return withParallelBoot(true);
+	}
+
+	public RootLayerBuilder withParallelBoot(boolean parallelBoot) {
+		this.parallelBoot = parallelBoot;
+		return this;
+	}
+
+	public RootLayerBuilder withBootThreads(int bootThreads) {
+		if(bootThreads < 1)
+			throw new IllegalArgumentException("Must be at least one boot thread.");
+		this.bootThreads = bootThreads;
+		return this;
+	}
+
+	public RootLayerBuilder withCacheDirectory(Path cacheDirectory) {
+		this.cacheDirectory = Optional.of(cacheDirectory);
+		return this;
+	}
+
+	public RootLayerBuilder withoutModuleCache() {
+		return withModuleCache(false);
+	}
+
+	/**
+	 * Whether to cache the module descriptors of jars in the cache directory, so they do 
+	 * not need to be opened to find the modules in each layer on every boot. 
+	 * Defaults to <code>true</code>.
+	 * 
+	 * @param moduleCache module cache
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withModuleCache(boolean moduleCache) {
+		this.moduleCache = moduleCache;
+		return this;
+	}
+
+	public RootLayerBuilder withoutResolutionLocks() {
+		return withResolutionLocks(false);
+	}
+
+	/**
+	 * Whether to write a lock file in the cache directory for each default layer after
+	 * its artifacts are resolved, and use it on following boots instead of resolving
+	 * them again, as long as nothing that went into the resolution has changed. 
+	 * Defaults to <code>true</code>.
+	 * 
+	 * @param resolutionLocks resolution locks
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withResolutionLocks(boolean resolutionLocks) {
+		this.resolutionLocks = resolutionLocks;
+		return this;
+	}
+
+	public RootLayerBuilder withClassTraining() {
+		return withClassTraining(true);
+	}
+
+	/**
+	 * Record which classes are defined in each layer during this run, and write them
+	 * to the cache directory when the root is shutdown. Following runs without training
+	 * will load these classes in the background as each layer is opened.
+	 * 
+	 * @param classTraining class training
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withClassTraining(boolean classTraining) {
+		this.classTraining = classTraining;
+		return this;
+	}
+
+	/**
+	 * Whether to load classes recorded by a previous training run in the background
+	 * as each layer is opened. Defaults to <code>true</code>, but has no effect until
+	 * there has been a training run.
+	 * 
+	 * @param classPreload class preload
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withClassPreload(boolean classPreload) {
+		this.classPreload = classPreload;
+		return this;
+	}
+
+	/**
+	 * Set whether layers that do not depend on each other may be closed concurrently
+	 * on shutdown. Layers are always closed before their parents.
+	 * 
+	 * @param parallelShutdown parallel shutdown
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withParallelShutdown(boolean parallelShutdown) {
+		this.parallelShutdown = parallelShutdown;
+		return this;
+	}
+
+	/**
+	 * Set how long to wait for all layers to close on shutdown, after which any
+	 * layers still open are abandoned.
+	 * 
+	 * @param shutdownTimeout shutdown timeout
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withShutdownTimeout(Duration shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+		return this;
+	}
+
+	/**
+	 * Set how long to wait for each plugin's <code>beforeClose()</code> and <code>close()</code>
+	 * on shutdown. Plugins that take longer have their stack logged and are abandoned.
+	 * 
+	 * @param pluginShutdownTimeout plugin shutdown timeout
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withPluginShutdownTimeout(Duration pluginShutdownTimeout) {
+		this.pluginShutdownTimeout = pluginShutdownTimeout;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of artifacts that may be downloaded at the same time. 
+	 * 
+	 * @param downloadThreads download threads
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+		return this;
+	}
+
+	/**
+	 * Set whether downloads of an artifact that more than one remote repository can supply
+	 * are hedged. The download starts with the repository that has recently been fastest,
+	 * and if it is slow to respond, a backup request is made to the next one. 
+	 * 
+	 * @param hedgedDownloads hedged downloads
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withHedgedDownloads(boolean hedgedDownloads) {
+		this.hedgedDownloads = hedgedDownloads;
+		return this;
+	}
+
+	/**
+	 * Set the percentile of a repository's recent response times after which a backup 
+	 * request is made when downloads are hedged. 
+	 * 
+	 * @param hedgePercentile percentile, 1-100
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withHedgePercentile(int hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+		return this;
+	}
+
+	/**
+	 * Set the HTTP version used to talk to remote repositories. HTTP/2 (the default) allows
+	 * many downloads from the same host to share a connection, and falls back to HTTP/1.1
+	 * if the server does not support it.
+	 * 
+	 * @param httpVersion http version
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withHttpVersion(HttpClient.Version httpVersion) {
+		this.httpVersion = httpVersion;
+		return this;
+	}
+
+	public RootLayerBuilder withHttpConnectTimeout(Duration httpConnectTimeout) {
+		this.httpConnectTimeout = httpConnectTimeout;
+		return this;
+	}
+
+	/**
+	 * Set how long to wait for a response from a remote repository, or empty to 
+	 * wait indefinitely.
+	 * 
+	 * @param httpRequestTimeout request timeout
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withHttpRequestTimeout(Optional<Duration> httpRequestTimeout) {
+		this.httpRequestTimeout = httpRequestTimeout;
+		return this;
+	}
+
+	/**
+	 * Set the executor HTTP clients use for asynchronous tasks, for example 
+	 * {@link Executors#newVirtualThreadPerTaskExecutor()}.
+	 * 
+	 * @param httpExecutor executor
+	 * @return this for chaining
+	 */
+	public RootLayerBuilder withHttpExecutor(Executor httpExecutor) {
+		this.httpExecutor = Optional.of(httpExecutor);
+		this.closeHttpExecutor = false;
+		return this;
+	}
+
 	@Override
 	protected RootLayerBuilder fromComponentSection(INI.Section section) {
 		super.fromComponentSection(section);
 		if (type != LayerType.ROOT) {
 			throw new IllegalArgumentException(format("Layer {0} cannot be of type {1}", id, this.type));
 		}
+		section.getBooleanOr("parallel-boot").ifPresent(this::withParallelBoot);
+		section.getIntOr("boot-threads").ifPresent(this::withBootThreads);
+		section.getOr("cache-directory").map(Paths::get).ifPresent(this::withCacheDirectory);
+		section.getBooleanOr("module-cache").ifPresent(this::withModuleCache);
+		section.getBooleanOr("resolution-locks").ifPresent(this::withResolutionLocks);
+		section.getBooleanOr("class-training").ifPresent(this::withClassTraining);
+		section.getBooleanOr("class-preload").ifPresent(this::withClassPreload);
+		section.getBooleanOr("parallel-shutdown").ifPresent(this::withParallelShutdown);
+		section.getOr("shutdown-timeout").map(Bootlace::parseDuration).ifPresent(this::withShutdownTimeout);
+		section.getOr("plugin-shutdown-timeout").map(Bootlace::parseDuration).ifPresent(this::withPluginShutdownTimeout);
+		section.getIntOr("download-threads").ifPresent(this::withDownloadThreads);
+		section.getBooleanOr("hedged-downloads").ifPresent(this::withHedgedDownloads);
+		section.getIntOr("hedge-percentile").ifPresent(this::withHedgePercentile);
+		section.getOr("http-version").map(Bootlace::parseHttpVersion).ifPresent(this::withHttpVersion);
+		section.getOr("http-connect-timeout").map(Bootlace::parseDuration).ifPresent(this::withHttpConnectTimeout);
+		section.getOr("http-request-timeout").map(Bootlace::parseDuration).ifPresent(d -> withHttpRequestTimeout(d.isZero() ? Optional.empty() : Optional.of(d)));
+		section.getOr("http-executor").ifPresent(e -> {
+			if(e.equals("virtual")) {
+				withHttpExecutor(Executors.newVirtualThreadPerTaskExecutor());
+				closeHttpExecutor = true;
+			}
+			else if(!e.equals("default")) {
+				throw new IllegalArgumentException(MessageFormat.format("Unknown http-executor `{0}`, may be `default` or `virtual`.", e));
+			}
+		});
 		return this;
 	}
 }
\ No newline at end of file
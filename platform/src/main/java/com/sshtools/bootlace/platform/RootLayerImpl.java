@@ -25,31 +25,49 @@ import static com.sshtools.bootlace.api.Lang.runWithLoader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.module.Configuration;
+import java.lang.module.FindException;
 import java.lang.module.ModuleFinder;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 
 import com.sshtools.bootlace.api.Access;
+import com.sshtools.bootlace.api.AppRepository;
 import com.sshtools.bootlace.api.ArtifactRef;
 import com.sshtools.bootlace.api.BootContext;
+import com.sshtools.bootlace.api.BootTimings;
+import com.sshtools.bootlace.api.BootTimings.Phase;
 import com.sshtools.bootlace.api.ChildLayer;
 import com.sshtools.bootlace.api.Collect;
 import com.sshtools.bootlace.api.Exceptions;
@@ -59,6 +77,7 @@ import com.sshtools.bootlace.api.Http;
 import com.sshtools.bootlace.api.Http.HttpClientFactory;
 import com.sshtools.bootlace.api.Layer;
 import com.sshtools.bootlace.api.LayerContext;
+import com.sshtools.bootlace.api.LocalRepository;
 import com.sshtools.bootlace.api.Logs;
 import com.sshtools.bootlace.api.Logs.BootLog;
 import com.sshtools.bootlace.api.Logs.Log;
@@ -67,6 +86,7 @@ import com.sshtools.bootlace.api.PluginContext;
 import com.sshtools.bootlace.api.DefaultLayer;
 import com.sshtools.bootlace.api.PluginRef;
 import com.sshtools.bootlace.api.RootContext;
+import com.sshtools.bootlace.api.RootContext.Listener;
 import com.sshtools.bootlace.api.RootLayer;
 
 /**
@@ -111,9 +131,11 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		@Override
 		public Optional<Layer> layer(String id) {
 			var global = ((RootLayerImpl)layer.rootLayer().get()).publicLayers.get(id);
-			if(global != null) 
-				return Optional.of(global);
-			return Optional.ofNullable(searchLayersForId(layer.rootLayer().orElse(null), layer, id));
+			var found = global == null ? searchLayersForId(layer.rootLayer().orElse(null), layer, id) : global;
+			if(found instanceof ChildLayer cl && isLazyPending(cl)) {
+				activate(cl);
+			}
+			return Optional.ofNullable(found);
 		}
 
 		@Override
@@ -138,6 +160,10 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 			if(res.isEmpty()) {
 				res = searchParents(parents, plugin);
 			}
+			if(res.isEmpty() && activateProviders(Plugin.class.getName(), Optional.of(plugin.getName()))) {
+				/* Only plugins that are visible to this layer, the same as any other lookup */
+				res = searchParents(parents, plugin);
+			}
 			return res;
 		}
 
@@ -189,7 +215,7 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 
 	class RootContextImpl implements RootContext {
 
-		private List<Listener> listeners = new ArrayList<>();
+		private List<Listener> listeners = new CopyOnWriteArrayList<>();
 
 		@Override
 		public void addListener(Listener listener) {
@@ -213,16 +239,25 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 
 		@Override
 		public void shutdown() {
-			sem.release();
+			if(!shutdown.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				closeAll();
+			}
+			finally {
+				sem.release();
+			}
 		}
 
 		@Override
 		public boolean canRestart() {
-			return false;
+			return restartSource.isPresent();
 		}
 
 		@Override
 		public void restart() {
+			RootLayerImpl.this.restart();
 		}
 
 		@Override
@@ -234,14 +269,40 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		public boolean hasPlugin(String className) {
 			return pluginObjects.keySet().stream().map(Class::getName).toList().contains(className);
 		}
-		
 
-		final Set<GAV> artifacts = new LinkedHashSet<GAV>();
+		@Override
+		public CompletableFuture<RootContext> ready() {
+			return ready.copy();
+		}
+
+		@Override
+		public CompletableFuture<ChildLayer> ready(String layerId) {
+			if(getLayerOr(layerId).isEmpty()) {
+				return CompletableFuture.failedFuture(new IllegalArgumentException(MessageFormat.format("No layer `{0}`.", layerId)));
+			}
+			return layerReady(layerId).copy();
+		}
+
+		@Override
+		public CompletableFuture<RootContext> booted() {
+			return booted.copy();
+		}
+
+		@Override
+		public BootTimings timings() {
+			return timings;
+		}
+
+		final Set<GAV> artifacts = Collections.synchronizedSet(new LinkedHashSet<GAV>());
 
 		void addArtifact(GAV artifact) {
 			artifacts.add(artifact);
 		}
 		
+		void removeArtifact(GAV artifact) {
+			artifacts.remove(artifact);
+		}
+		
 		boolean hasArtifact(GAV artifact) {
 			return artifacts.contains(artifact.toWithoutVersion());
 		}
@@ -253,21 +314,54 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 	private final Optional<BootContext> app;
 	private final RootContextImpl root;
 	private final Semaphore sem = new Semaphore(1);
-	private final HttpClientFactory httpClientFactory;
+	private final HttpClientPool httpClientFactory;
 	private final String userAgent;
 	private final Optional<BootstrapRepository> bootstrapRepository;
 	protected final Map<String, ChildLayer> publicLayers = new ConcurrentHashMap<>();
 	private Map<Class<? extends Plugin>, Plugin> pluginObjects = new ConcurrentHashMap<>();
 	private Map<String, ClassLoader> globalResourceLoaders = new ConcurrentHashMap<>();
-	private final Map<String, ChildLayer> tempLayers = new LinkedHashMap<>();
+	private final Map<String, ChildLayer> tempLayers = Collections.synchronizedMap(new LinkedHashMap<>());
 	private final Optional<PluginInitializer> pluginInitializer;
 	private final Optional<PluginDestroyer> pluginDestroyer;
 	protected final Map<String, ModuleLayer> moduleLayers = new ConcurrentHashMap<>();
 	protected final Map<String, ClassLoader> moduleLoaders = new ConcurrentHashMap<>();
 	protected final Path baseDir;
+	private final boolean parallelBoot;
+	private final int bootThreads;
+	private final Object listenerLock = new Object();
 
 	private boolean initialising;
 	private ClassLoader rootLoader;
+	private ForkJoinPool bootPool;
+	private volatile Map<String, CompletableFuture<ChildLayer>> opening = Collections.emptyMap();
+	private final Map<String, CompletableFuture<ChildLayer>> activations = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Set<String>>> lazyProvides = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<ChildLayer>> layerReady = new ConcurrentHashMap<>();
+	private final CompletableFuture<RootContext> ready = new CompletableFuture<>();
+	private final CompletableFuture<RootContext> booted = new CompletableFuture<>();
+	private final BootTimingsImpl timings = new BootTimingsImpl();
+	private final Path cacheDirectory;
+	final NegativeCache negativeCache;
+	final SnapshotCache snapshotCache;
+	final RepositoryIndex repositoryIndex;
+	private final LocalRepository localRepository;
+	private final AppRepository appRepository;
+	private final Optional<ModuleCache> moduleCache;
+	private final boolean resolutionLocks;
+	private final boolean classTraining;
+	private final Optional<ClassTraining> classes;
+	private final Optional<Consumer<RootLayerBuilder>> restartSource;
+	private final Map<String, String> definitions = new ConcurrentHashMap<>();
+	private final Map<String, String> stamps = new ConcurrentHashMap<>();
+	private final boolean parallelShutdown;
+	private final Duration shutdownTimeout;
+	private final Duration pluginShutdownTimeout;
+	private final AtomicBoolean shutdown = new AtomicBoolean();
+	private final DownloadScheduler downloads;
+	private final Optional<MirrorHedging> hedging;
+	private final boolean resolveOnly;
+	private final Predicate<String> activator = service -> activateProviders(service, Optional.empty());
+	private final Thread trainingHook = new Thread(this::stopTraining, "BootlaceTraining");
 	
 	final Map<String, ChildLayer> layers;
 
@@ -281,9 +375,30 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 				? Optional.of(BootstrapRepository.bootstrapRepository()) 
 				: Optional.empty());
 		this.userAgent = builder.userAgent.orElse("Bootlace");
-		this.httpClientFactory = builder.httpClientFactory.orElseGet(Http::defaultClientFactory);
-
-		layers =  builder.layers.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity()));
+		this.httpClientFactory = new HttpClientPool(builder.httpClientFactory.orElseGet(Http::defaultClientFactory),
+				builder.httpVersion, builder.httpConnectTimeout, builder.httpRequestTimeout, builder.httpExecutor,
+				builder.closeHttpExecutor);
+		this.parallelBoot = builder.parallelBoot;
+		this.bootThreads = builder.bootThreads;
+		this.cacheDirectory = builder.cacheDirectory.orElseGet(Bootlace::defaultCacheDirectory);
+		this.negativeCache = new NegativeCache(cacheDirectory.resolve("missing"));
+		this.snapshotCache = new SnapshotCache(cacheDirectory.resolve("snapshots"));
+		this.repositoryIndex = new RepositoryIndex(cacheDirectory.resolve("index.properties"));
+		this.localRepository = new LocalRepositoryImpl.LocalRepositoryBuilder().withIndex(repositoryIndex).build();
+		this.appRepository = new AppRepositoryImpl.AppRepositoryBuilder().withIndex(repositoryIndex).build();
+		this.moduleCache = builder.moduleCache ? Optional.of(new ModuleCache(cacheDirectory)) : Optional.empty();
+		this.resolutionLocks = builder.resolutionLocks;
+		this.resolveOnly = builder.resolveOnly;
+		this.classTraining = builder.classTraining && !resolveOnly;
+		this.classes = !resolveOnly && (builder.classTraining || builder.classPreload) ? Optional.of(new ClassTraining(cacheDirectory)) : Optional.empty();
+		this.restartSource = builder.restartSource;
+		this.downloads = new DownloadScheduler(builder.downloadThreads);
+		this.hedging = builder.hedgedDownloads ? Optional.of(new MirrorHedging(builder.hedgePercentile)) : Optional.empty();
+		this.parallelShutdown = builder.parallelShutdown;
+		this.shutdownTimeout = builder.shutdownTimeout;
+		this.pluginShutdownTimeout = builder.pluginShutdownTimeout;
+
+		layers = Collections.synchronizedMap(builder.layers.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity())));
 
 		layers.forEach((k, v) -> ((AbstractChildLayer) v).rootLayer(this));
 		LOG.debug("Attached root layer to child layers");
@@ -295,21 +410,74 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		app = builder.appContext;
 		root = new RootContextImpl();
 		baseDir = app.map(a -> a.basePath()).orElseGet(() -> Paths.get(System.getProperty("user.dir")));
+		layers.values().forEach(l -> definitions.put(l.id(), definition(l)));
+		
+		LayerContextImpl.addActivator(activator);
+		
+		if(classTraining) {
+			var training = classes.get();
+			training.start();
+			Runtime.getRuntime().addShutdownHook(trainingHook);
+		}
+		
+		/* Keep what was found in local repositories for the next boot */
+		booted.whenComplete((r, e) -> repositoryIndex.save());
 		
 		initialising = true;
+		List<ChildLayer> deferred;
 		try {
-			layers.values().forEach(l -> {
-				open(l, baseDir);
-				afterOpen(l);
-			});
+			var toOpen = layers.values().stream().filter(l -> !isLazyPending(l)).toList();
+			var critical = resolveOnly ? new HashSet<>(toOpen) : critical(toOpen);
+			deferred = toOpen.stream().
+					filter(l -> !critical.contains(l)).
+					sorted(Comparator.comparingInt((ChildLayer l) -> ((AbstractChildLayer)l).priority).reversed()).
+					toList();
+			var criticalInOrder = toOpen.stream().filter(critical::contains).toList();
+			if(parallelBoot) {
+				openConcurrently(criticalInOrder);
+			}
+			else {
+				criticalInOrder.forEach(l -> {
+					open(l, baseDir);
+					afterOpen(l);
+				});
+			}
+		}
+		catch(RuntimeException | Error e) {
+			LayerContextImpl.removeActivator(activator);
+			if(classTraining) {
+				Runtime.getRuntime().removeShutdownHook(trainingHook);
+			}
+			classes.ifPresent(ClassTraining::close);
+			ready.completeExceptionally(e);
+			booted.completeExceptionally(e);
+			throw e;
 		}
 		finally {
-			initialising = true;
-			layers.putAll(tempLayers);
-			tempLayers.clear();;
+			/* Layers added from now on, e.g. by deferred, lazy or restart opens, go straight into layers */
+			synchronized(tempLayers) {
+				initialising = false;
+				layers.putAll(tempLayers);
+				tempLayers.clear();
+			}
+		}
+		
+		registerGlobalResources(pluginObjects.values());
+		if(LOG.debug()) {
+			LOG.debug("Boot timings: " + System.lineSeparator() + timings.report());
 		}
+		ready.complete(root);
 		
-		pluginObjects.forEach((k,v) -> {
+		if(deferred.isEmpty()) {
+			booted.complete(root);
+		}
+		else {
+			openDeferred(deferred);
+		}
+	}
+
+	private void registerGlobalResources(Collection<Plugin> plugins) {
+		plugins.forEach(v -> {
 			/* TODO move this to plugin loading .. so they are unregistered on unload */
 			try {
 				var en = v.getClass().getClassLoader().getResources("META-INF/MANIFEST.MF");
@@ -333,10 +501,90 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		});
 
 	}
+
+	/**
+	 * Work out which layers must be opened before the root layer is ready. This is
+	 * every layer that is not deferred, plus any deferred layers they have as parents.
+	 * 
+	 * @param toOpen all layers to open at boot
+	 * @return critical layers
+	 */
+	private Set<ChildLayer> critical(List<ChildLayer> toOpen) {
+		var byId = toOpen.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity()));
+		var critical = new HashSet<ChildLayer>();
+		toOpen.stream().
+			filter(l -> !((AbstractChildLayer)l).defer).
+			forEach(l -> addWithParents(l, byId, critical));
+		return critical;
+	}
+
+	private void addWithParents(ChildLayer layer, Map<String, ChildLayer> byId, Set<ChildLayer> critical) {
+		if(critical.add(layer)) {
+			if(((AbstractChildLayer)layer).defer) {
+				LOG.info("Deferred layer `{0}` is a parent of a critical layer, so will not be deferred.", layer.id());
+			}
+			layer.parents().stream().
+				map(byId::get).
+				filter(Objects::nonNull).
+				forEach(p -> addWithParents(p, byId, critical));
+		}
+	}
+
+	/**
+	 * Open deferred layers on a background thread, highest priority first (but always
+	 * after their parents). Failure of a deferred layer does not stop other layers 
+	 * opening, it is reported through its readiness future instead. 
+	 * 
+	 * @param deferred deferred layers in priority order
+	 */
+	private void openDeferred(List<ChildLayer> deferred) {
+		LOG.info("Opening {0} deferred layers in the background", deferred.size());
+		
+		var thread = new Thread(() -> {
+			var futures = new ConcurrentHashMap<String, CompletableFuture<ChildLayer>>();
+			var byId = deferred.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity()));
+			var executor = parallelBoot ? bootExecutor() : (Executor)Runnable::run;
+			
+			opening = futures;
+			try {
+				deferred.forEach(l -> scheduleOpen(l, byId, futures, p -> futures.get(p.id()), new LinkedHashSet<>(), executor, dl -> {
+					open(dl, baseDir);
+					afterOpen(dl);
+				}));
+				for(var layer : deferred) {
+					try {
+						futures.get(layer.id()).join();
+						if(layer instanceof DefaultLayerImpl dl) {
+							registerGlobalResources(dl.pluginRefs.stream().map(PluginRef::plugin).toList());
+						}
+					}
+					catch(CompletionException ce) {
+						LOG.error(MessageFormat.format("Failed to open deferred layer `{0}`.", layer.id()), ce.getCause());
+						layerReady(layer.id()).completeExceptionally(ce.getCause());
+					}
+				}
+				booted.complete(root);
+			}
+			catch(RuntimeException | Error e) {
+				booted.completeExceptionally(e);
+				throw e;
+			}
+			finally {
+				opening = Collections.emptyMap();
+				LOG.info("Deferred layers opened");
+			}
+		}, "BootlaceDeferred");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	CompletableFuture<ChildLayer> layerReady(String id) {
+		return layerReady.computeIfAbsent(id, k -> new CompletableFuture<>());
+	}
 	
 	@Override
 	List<ChildLayer> childLayers() {
-		return  layers.values().stream().
+		return  allLayers().stream().
 				filter(l -> l.parents().isEmpty()).
 				toList();
 	}
@@ -371,6 +619,24 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		return bootstrapRepository;
 	}
 
+	/**
+	 * Get the local repository used when a layer does not define one.
+	 * 
+	 * @return local repository
+	 */
+	LocalRepository localRepository() {
+		return localRepository;
+	}
+
+	/**
+	 * Get the app repository used when a layer does not define one.
+	 * 
+	 * @return app repository
+	 */
+	AppRepository appRepository() {
+		return appRepository;
+	}
+
 	@Override
 	public ChildLayer getLayer(String id) {
 		return getLayerOr(id).orElseThrow(() -> new IllegalArgumentException(MessageFormat.format("No layer with ID `{0}`", id)));
@@ -395,14 +661,35 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 	}
 	
 	void removeLayer(String id) {
-		var map = initialising ? tempLayers : layers;
-		map.remove(id);
+		synchronized(tempLayers) {
+			var map = initialising ? tempLayers : layers;
+			map.remove(id);
+		}
 	}
 	
 	void addLayer(String id, ChildLayer layer) {
-		var map = initialising ? tempLayers : layers;
-		if(map.put(id, layer) != null) {
-			throw new IllegalArgumentException(MessageFormat.format("Layer `{0}` is already known.", id));
+		synchronized(tempLayers) {
+			var map = initialising ? tempLayers : layers;
+			if(map.put(id, layer) != null) {
+				throw new IllegalArgumentException(MessageFormat.format("Layer `{0}` is already known.", id));
+			}
+		}
+	}
+	
+	/**
+	 * Get all known layers, including any added while the root layer is initialising. 
+	 * This is a copy, so is safe to use while layers are added or removed.
+	 * 
+	 * @return layers
+	 */
+	List<ChildLayer> allLayers() {
+		synchronized(tempLayers) {
+			var all = new ArrayList<ChildLayer>();
+			synchronized(layers) {
+				all.addAll(layers.values());
+			}
+			all.addAll(tempLayers.values());
+			return all;
 		}
 	}
 	
@@ -424,6 +711,9 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 					LOG.info("    {0}", plugin.getClass().getName());
 					PluginContextProviderImpl.current.set(ref.context());
 					runWithLoader(child.loader(), () -> {
+						var started = System.nanoTime();
+						var evt = new BootlaceEvents.PluginLifecycle();
+						evt.begin();
 						try {
 							plugin.afterOpen(ref.context());
 						}	
@@ -435,29 +725,49 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 						}
 						finally {
 							PluginContextProviderImpl.current.set(null);
+							timings.record(child.id(), plugin.getClass().getName(), Phase.AFTER_OPEN_PLUGIN, started);
+							evt.commitIfEnabled(child.id(), plugin, "afterOpen");
 						}	
 					});
 					 
 				});
 			}
-		} finally {
+		} 
+		catch(RuntimeException | Error e) {
+			layerReady(child.id()).completeExceptionally(e);
+			throw e;
+		}
+		finally {
 			try {
 				((AbstractLayer)child).onAfterOpen();
 			} finally {
-				root.listeners.forEach(l -> l.layerOpened(child));
+				fireListeners(l -> l.layerOpened(child));
 			}
 		}
+		layerReady(child.id()).complete(child);
+		
+		if(!classTraining) {
+			classes.ifPresent(c -> c.preload(child.id(), child.loader()));
+		}
 	}
 
 	void beforeClose(ChildLayer layer) {
+		beforeClose(layer, Optional.empty());
+	}
+
+	private void beforeClose(ChildLayer layer, Optional<ShutdownCoordinator> coordinator) {
+		var closeEvt = new BootlaceEvents.LayerClose();
+		closeEvt.begin();
 
 		try {
 			if(layer instanceof DefaultLayer) {
 				var pchild = (DefaultLayerImpl)layer;
 				try {
 					pchild.pluginRefs.forEach(ref -> {
-						runWithLoader(pchild.loader(), () -> {
+						closeStep(coordinator, layer, ref, "beforeClose", () -> runWithLoader(pchild.loader(), () -> {
 							PluginContextProviderImpl.current.set(ref.context());
+							var evt = new BootlaceEvents.PluginLifecycle();
+							evt.begin();
 							try {
 								ref.plugin().beforeClose(ref.context());
 							}
@@ -469,18 +779,21 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 							}
 							finally {
 								PluginContextProviderImpl.current.set(null);
+								evt.commitIfEnabled(layer.id(), ref.plugin(), "beforeClose");
 							}
-						});
+						}));
 					});
 				}
 				finally {
 					try {
-						pchild.pluginRefs.forEach(ref -> ref.context().close());
+						pchild.pluginRefs.forEach(ref -> closeStep(coordinator, layer, ref, "context", () -> ref.context().close()));
 					}
 					finally {
 						pchild.pluginRefs.forEach(ref -> {
-							runWithLoader(pchild.loader(), () -> {
+							closeStep(coordinator, layer, ref, "close", () -> runWithLoader(pchild.loader(), () -> {
 								PluginContextProviderImpl.current.set(ref.context());
+								var evt = new BootlaceEvents.PluginLifecycle();
+								evt.begin();
 								try {
 									ref.plugin().close();
 								}
@@ -497,25 +810,278 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 										});
 									} finally {
 										PluginContextProviderImpl.current.set(null);
+										evt.commitIfEnabled(layer.id(), ref.plugin(), "close");
 									}
 								}	
-							});
+							}));
 							 
 						});
 					}
 				}
 			}
 		} finally {
-			root.listeners.forEach(l -> l.layerClosed(layer));
+			try {
+				fireListeners(l -> l.layerClosed(layer));
+			}
+			finally {
+				closeEvt.commitIfEnabled(layer.id());
+			}
 		}
 	}
 
+	private void closeStep(Optional<ShutdownCoordinator> coordinator, ChildLayer layer, PluginRef ref, String phase, Runnable task) {
+		coordinator.ifPresentOrElse(c -> c.call(layer, ref, phase, task), task);
+	}
+
+	/**
+	 * Close all open layers, children before their parents, as part of shutdown.
+	 */
+	private void closeAll() {
+		/* Service lookups must no longer activate layers in this root */
+		LayerContextImpl.removeActivator(activator);
+		
+		/* Training needs the module layers, so must stop before they are closed */
+		if(classTraining) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(trainingHook);
+			}
+			catch(IllegalStateException ise) {
+				/* Already shutting down, the hook will stop training too */
+			}
+			stopTraining();
+		}
+		
+		/* When only resolving there are no module layers, but extension layers still need closing */
+		var open = allLayers().stream().filter(l -> resolveOnly || moduleLayers.containsKey(l.id())).toList();
+		var coordinator = new ShutdownCoordinator(shutdownTimeout, pluginShutdownTimeout, parallelShutdown);
+		coordinator.shutdown(open, l -> {
+			try {
+				beforeClose(l, Optional.of(coordinator));
+			}
+			finally {
+				try {
+					close(l);
+				}
+				finally {
+					((AbstractChildLayer)l).onClosed();
+				}
+			}
+		});
+		synchronized(this) {
+			if(bootPool != null) {
+				bootPool.shutdown();
+			}
+		}
+		classes.ifPresent(ClassTraining::close);
+		downloads.close();
+		hedging.ifPresent(MirrorHedging::close);
+		httpClientFactory.close();
+		repositoryIndex.save();
+	}
+
+	private void stopTraining() {
+		classes.get().stop(moduleLayers);
+	}
+
+	/**
+	 * Shutdown the root context, closing all layers.
+	 */
+	void shutdown() {
+		root.shutdown();
+	}
+
 	void close(ChildLayer layer) {
+		layerReady.remove(layer.id());
 		ModuleLayer mlyr = moduleLayers.remove(layer.id());
 		if(mlyr != null) {
 			LayerContextImpl.deregister(layer.id(), mlyr);
 		}
 		moduleLoaders.remove(layer.id());
+		activations.remove(layer.id());
+		lazyProvides.remove(layer.id());
+		stamps.remove(layer.id());
+		
+		if(layer instanceof DefaultLayerImpl dl) {
+			dl.pluginRefs.forEach(ref -> pluginObjects.remove(ref.plugin().getClass(), ref.plugin()));
+			dl.pluginRefs.clear();
+			synchronized(dl) {
+				dl.layerArtifacts.ifPresent(la -> ((LayerArtifactsImpl)la).loaded().forEach(root::removeArtifact));
+				dl.layerArtifacts = Optional.empty();
+			}
+		}
+	}
+
+	/**
+	 * Re-read the layer definitions from the restart source, and close and re-open only
+	 * those layers whose definitions or resolved artifacts have changed since they were
+	 * opened, along with any layers that descend from them. Unchanged layers, their
+	 * module layers and loaders are left as they are, and re-opened layers are resolved
+	 * against them.
+	 */
+	synchronized void restart() {
+		var source = restartSource.orElseThrow(() -> new IllegalStateException("Root layer has no restart source."));
+		
+		/* Let any deferred layers finish opening first */
+		booted.handle((r, e) -> r).join();
+		
+		LOG.info("Restarting, looking for changed layers");
+		
+		var bldr = new RootLayerBuilder(id());
+		app.ifPresent(bldr::withContext);
+		source.accept(bldr);
+		var newLayers = bldr.layers.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity()));
+		
+		var changed = new LinkedHashSet<String>();
+		definitions.forEach((id, def) -> {
+			var newLayer = newLayers.get(id);
+			if(newLayer == null) {
+				LOG.info("Layer `{0}` has been removed", id);
+				changed.add(id);
+			}
+			else if(!def.equals(definition(newLayer))) {
+				LOG.info("Definition of layer `{0}` has changed", id);
+				changed.add(id);
+			}
+			else if(artifactsChanged(id)) {
+				LOG.info("Artifacts of layer `{0}` have changed", id);
+				changed.add(id);
+			}
+		});
+		var added = newLayers.keySet().stream().filter(id -> !definitions.containsKey(id)).toList();
+		
+		var affected = withDescendants(changed);
+		var toReopen = newLayers.values().stream().
+				filter(l -> affected.contains(l.id()) || added.contains(l.id())).
+				toList();
+		
+		newLayers.values().stream().
+			filter(l -> !toReopen.contains(l)).
+			forEach(l -> ((AbstractChildLayer)l).onClosed());
+		
+		if(toReopen.isEmpty() && affected.isEmpty()) {
+			LOG.info("No layers have changed");
+			return;
+		}
+		
+		var toClose = new ArrayList<>(topological(affected));
+		Collections.reverse(toClose);
+		toClose.forEach(this::closeForRestart);
+		
+		definitions.keySet().removeIf(id -> !newLayers.containsKey(id));
+		toReopen.forEach(l -> {
+			definitions.put(l.id(), definition(l));
+			((AbstractChildLayer) l).rootLayer(this);
+			layers.put(l.id(), l);
+		});
+		
+		var toOpen = toReopen.stream().filter(l -> !isLazyPending(l)).toList();
+		LOG.info("Re-opening {0} layers", toOpen.size());
+		if(parallelBoot) {
+			openConcurrently(toOpen);
+		}
+		else {
+			toOpen.forEach(l -> {
+				open(l, baseDir);
+				afterOpen(l);
+			});
+		}
+		
+		registerGlobalResources(toOpen.stream().
+				filter(DefaultLayerImpl.class::isInstance).
+				flatMap(l -> ((DefaultLayerImpl)l).pluginRefs.stream()).
+				map(PluginRef::plugin).
+				toList());
+	}
+
+	private void closeForRestart(ChildLayer layer) {
+		LOG.info("Closing layer `{0}` for restart", layer.id());
+		try {
+			beforeClose(layer);
+		}
+		finally {
+			try {
+				close(layer);
+			}
+			finally {
+				layers.remove(layer.id());
+				((AbstractChildLayer)layer).rootLayer(null);
+				((AbstractChildLayer)layer).onClosed();
+			}
+		}
+	}
+
+	private Set<String> withDescendants(Set<String> ids) {
+		var all = new LinkedHashSet<String>(ids);
+		var found = true;
+		while(found) {
+			found = false;
+			for(var layer : allLayers()) {
+				if(!all.contains(layer.id()) && layer.parents().stream().anyMatch(all::contains)) {
+					all.add(layer.id());
+					found = true;
+				}
+			}
+		}
+		all.retainAll(layers.keySet());
+		return all;
+	}
+
+	private List<ChildLayer> topological(Set<String> ids) {
+		var sorted = new LinkedHashMap<String, ChildLayer>();
+		ids.forEach(id -> addParentsFirst(id, ids, layers, sorted));
+		return new ArrayList<>(sorted.values());
+	}
+
+	private static List<ChildLayer> parentsFirst(Map<String, ChildLayer> byId) {
+		var sorted = new LinkedHashMap<String, ChildLayer>();
+		byId.keySet().forEach(id -> addParentsFirst(id, byId.keySet(), byId, sorted));
+		return new ArrayList<>(sorted.values());
+	}
+
+	private static void addParentsFirst(String id, Set<String> ids, Map<String, ChildLayer> all, Map<String, ChildLayer> sorted) {
+		if(!sorted.containsKey(id)) {
+			var layer = all.get(id);
+			layer.parents().stream().
+				filter(ids::contains).
+				forEach(p -> addParentsFirst(p, ids, all, sorted));
+			sorted.put(id, layer);
+		}
+	}
+
+	private boolean artifactsChanged(String id) {
+		var stamp = stamps.get(id);
+		if(stamp != null && layers.get(id) instanceof DefaultLayerImpl dl) {
+			return dl.layerArtifacts.map(la -> !stamp.equals(stamp(la.paths()))).orElse(false);
+		}
+		return false;
+	}
+
+	/**
+	 * Fingerprint a layer definition as it was declared, i.e. before any expansion.
+	 * 
+	 * @param layer layer
+	 * @return fingerprint
+	 */
+	private String definition(ChildLayer layer) {
+		if(layer instanceof DefaultLayerImpl dl) {
+			return String.join(":", ResolutionLock.inputs(dl, baseDir), String.valueOf(dl.lazy), String.valueOf(dl.parallelPlugins));
+		}
+		else {
+			return String.join(":", layer.getClass().getName(), layer.name().orElse(""), String.valueOf(layer.parents()),
+					String.valueOf(layer.appRepositories()), String.valueOf(layer.localRepositories()), 
+					String.valueOf(layer.remoteRepositories()));
+		}
+	}
+
+	private static String stamp(Set<Path> paths) {
+		return paths.stream().sorted().map(p -> {
+			try {
+				return p + "@" + Files.size(p) + "@" + Files.getLastModifiedTime(p).toMillis();
+			}
+			catch(IOException ioe) {
+				return p + "@missing";
+			}
+		}).collect(Collectors.joining(";"));
 	}
 
 	void open(ChildLayer layerDef, Path contextDir) {
@@ -530,6 +1096,9 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 //	
 
 		var id = layerDef.id();			
+		var started = System.nanoTime();
+		var evt = new BootlaceEvents.LayerOpen();
+		evt.begin();
 
 		LOG.info("Opening child layer `{0}`. {1}", id, layerDef.name().orElse("Unnammed"));
 		LOG.debug(layerDef);
@@ -546,50 +1115,165 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 			
 			LOG.info("Artifacts: {0}" , System.lineSeparator() + "    " +String.join("," + System.lineSeparator() + "    ", pluginLayerDef.artifacts().stream().map(ArtifactRef::toString).toList()));
 			
-			var layerArtifacts = new LayerArtifactsImpl(baseDir, pluginLayerDef, httpClientFactory, root);
-			pluginLayerDef.layerArtifacts = Optional.of(layerArtifacts);
-			var paths = layerArtifacts.paths(); 
-
-			var parents = parents(layerDef);
-			ModuleLayer layer = createAndRegisterLoader(layerDef, paths, parents);
+			var paths = layerArtifacts(pluginLayerDef).paths(); 
+			stamps.put(id, stamp(paths));
 
-			loadPlugins(pluginLayerDef, id, parents, layer);
-		
-			LOG.info("Initialising plugins in layer `{0}`", id);
-			pluginLayerDef.pluginRefs.forEach(ref -> { 
-				LOG.info("    {0}", ref.plugin().getClass().getName());
-				runWithLoader(layerDef.loader(), () -> { 
-					PluginContextProviderImpl.current.set(ref.context());
-					try {
-						ref.plugin().open(ref.context());
-					}
-					catch(RuntimeException re) {
-						throw re;
-					}
-					catch(Exception e) {
-						throw new Exceptions.FailedToClosePlugin(ref, e);
-					}
-					finally { 
-						PluginContextProviderImpl.current.set(null);
-					}	
-				});
+			if(resolveOnly) {
+				LOG.info("Resolved {0} artifacts for `{1}`", paths.size(), id);
+			}
+			else {
+				var parents = parents(layerDef);
+				ModuleLayer layer = createAndRegisterLoader(layerDef, paths, parents);
+	
+				if(pluginLayerDef.parallelPlugins) {
+					loadAndOpenPluginsConcurrently(pluginLayerDef, id, parents, layer);
+				}
+				else {
+					loadPlugins(pluginLayerDef, id, parents, layer);
 				
-			});
+					LOG.info("Initialising plugins in layer `{0}`", id);
+					pluginLayerDef.pluginRefs.forEach(ref -> openPlugin(layerDef, ref));
+				}
+			}
 		} else {
 			/* Dynamic layer */
 			if (LOG.debug()) {
 				LOG.debug("{0} is a dynamic layer", layerDef.id());
 			}
 			
-			createAndRegisterLoader(layerDef, Collections.emptySet(), parents(layerDef));
+			if(!resolveOnly) {
+				createAndRegisterLoader(layerDef, Collections.emptySet(), parents(layerDef));
+			}
 		}
 
 			
+		timings.record(id, Phase.OPEN_LAYER, started);
+		evt.commitIfEnabled(id, layerDef.getClass().getSimpleName());
 		LOG.info("Opened child layer {0}", layerDef.id());
 		((AbstractLayer)layerDef).onOpened();
 		monitor().ifPresent(mon -> mon.loadedLayer(layerDef));
 	}
 	
+	/**
+	 * Get if a layer is lazy, and has not yet been activated. A layer that another
+	 * thread is still activating is pending too, so callers wait for it by calling
+	 * {@link #activate(ChildLayer)}.
+	 * 
+	 * @param layer layer
+	 * @return lazy and not yet activated
+	 */
+	boolean isLazyPending(ChildLayer layer) {
+		if(resolveOnly || !(layer instanceof DefaultLayerImpl dl) || !dl.lazy) {
+			return false;
+		}
+		var activation = activations.get(layer.id());
+		return activation == null || !activation.isDone();
+	}
+
+	/**
+	 * Open a lazy layer, if it has not already been opened. Activation only ever
+	 * happens once, any other threads that need the same layer will wait for it
+	 * to be activated. If activation fails, it may be tried again.
+	 * 
+	 * @param layer layer
+	 */
+	void activate(ChildLayer layer) {
+		var id = layer.id();
+		var future = new CompletableFuture<ChildLayer>();
+		var existing = activations.putIfAbsent(id, future);
+		if(existing == null) {
+			LOG.info("Activating lazy layer `{0}`", id);
+			try {
+				open(layer, baseDir);
+				afterOpen(layer);
+				future.complete(layer);
+			}
+			catch(RuntimeException | Error e) {
+				/* Forget anything partially opened, so activation may be tried again */
+				try {
+					close(layer);
+				}
+				finally {
+					activations.remove(id, future);
+					future.completeExceptionally(e);
+				}
+				throw e;
+			}
+		}
+		else {
+			var ctx = PluginContextProviderImpl.current.get();
+			if(ctx != null && ctx.layer().id().equals(id)) {
+				/* A plugin in the layer being activated is looking itself up */
+				return;
+			}
+			try {
+				existing.join();
+			}
+			catch(CompletionException ce) {
+				if(ce.getCause() instanceof RuntimeException re)
+					throw re;
+				else if(ce.getCause() instanceof Error err)
+					throw err;
+				else
+					throw new IllegalStateException(MessageFormat.format("Failed to activate layer `{0}`.", id), ce.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Activate any lazy layers that have a module providing a particular service,
+	 * optionally only if one of the providers is a particular class.
+	 * 
+	 * @param service service type name
+	 * @param provider provider class name
+	 * @return whether any layers were activated
+	 */
+	private boolean activateProviders(String service, Optional<String> provider) {
+		var activated = false;
+		for(var layer : pendingLazyLayers()) {
+			var providers = lazyProvides((DefaultLayerImpl)layer).get(service);
+			if(providers != null && provider.map(providers::contains).orElse(true)) {
+				activate(layer);
+				activated = true;
+			}
+		}
+		return activated;
+	}
+
+	private List<ChildLayer> pendingLazyLayers() {
+		return allLayers().stream().filter(this::isLazyPending).toList();
+	}
+
+	private Map<String, Set<String>> lazyProvides(DefaultLayerImpl layer) {
+		return lazyProvides.computeIfAbsent(layer.id(), k -> {
+			var provides = new HashMap<String, Set<String>>();
+			try {
+				ModuleFinder.of(layerArtifacts(layer).paths().toArray(Path[]::new)).findAll().forEach(ref -> 
+					ref.descriptor().provides().forEach(p -> 
+						provides.computeIfAbsent(p.service(), svc -> new HashSet<>()).addAll(p.providers())
+					)
+				);
+			}
+			catch(FindException fe) {
+				LOG.warning(MessageFormat.format("Could not examine the modules in lazy layer `{0}`, it will only be activated by ID.", layer.id()), fe);
+			}
+			return provides;
+		});
+	}
+
+	private LayerArtifactsImpl layerArtifacts(DefaultLayerImpl layer) {
+		/* Lazy layers may have already been resolved to find out what services they provide */
+		synchronized(layer) {
+			if(layer.layerArtifacts.isEmpty()) {
+				var started = System.nanoTime();
+				layer.layerArtifacts = Optional.of(new LayerArtifactsImpl(baseDir, layer, httpClientFactory, downloads, hedging, root, cacheDirectory.resolve("poms"),
+						resolutionLocks ? Optional.of(cacheDirectory.resolve("locks")) : Optional.empty()));
+				timings.record(layer.id(), Phase.EXPAND, started);
+			}
+			return (LayerArtifactsImpl)layer.layerArtifacts.get();
+		}
+	}
+
 	private ModuleLayer createAndRegisterLoader(ChildLayer layerDef, Set<Path> paths, Set<ModuleLayer> parents) {
 
 		var childLayerLoader = new FilteredClassLoader.Builder(rootLoader).
@@ -618,9 +1302,13 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 	
 		/* Sort the module paths so that directories come last, and also
 		 * canonicalize the paths. JPMS doesn't seem to liked directories that
-		 * are symlinks, so we need to get the actual paths.
+		 * are symlinks, so we need to get the actual paths. The module cache
+		 * does the same, but avoids opening jars it has seen before.
 		 */
-		var finder = ModuleFinder.of(modulePathEntries.stream().sorted((p1, p2) -> {
+		var started = System.nanoTime();
+		var evt = new BootlaceEvents.ModuleLayerCreate();
+		evt.begin();
+		var finder = moduleCache.map(c -> c.finder(modulePathEntries)).orElseGet(() -> ModuleFinder.of(modulePathEntries.stream().sorted((p1, p2) -> {
 			var d1 = Files.isDirectory(p1) ? 1 : -1;
 			var d2 = Files.isDirectory(p2) ? 1 : -1;
 			var o = Integer.valueOf(d1).compareTo(d2);
@@ -636,11 +1324,12 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
-		}).toList().toArray(Path[]::new));
+		}).toList().toArray(Path[]::new)));
 		
 		/* Find all the modules we want to load */
 		var roots = finder.findAll().stream().map(m -> m.descriptor().name()).
 				collect(Collectors.toSet());
+		started = timings.record(layerDef.id(), Phase.FIND_MODULES, started);
 
 		
 		/* Create a module layer with  a single class loader that includes
@@ -650,10 +1339,11 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 				parentLayers.stream().map(ModuleLayer::configuration).
 					collect(Collectors.toList()), ModuleFinder.of(),
 				roots);
-		
+		started = timings.record(layerDef.id(), Phase.RESOLVE, started);
 		
 		var ctrlr = ModuleLayer.defineModulesWithOneLoader(appConfig, parentLayers.stream().toList(),
 				loader);
+		timings.record(layerDef.id(), Phase.DEFINE, started);
 		
 		layerDef.moduleParameters().ifPresent(modprms -> {
 
@@ -670,6 +1360,7 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		});
 		
 		var mlayer = ctrlr.layer();
+		evt.commitIfEnabled(layerDef.id(), modulePathEntries.size(), mlayer.modules().size());
 		LOG.info("Created layer: {0} - {1}", layerDef.id(), mlayer);
 		return mlayer;
 	}
@@ -680,8 +1371,10 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 		LOG.info("Loading plugins for layer `{0}`", id);
 
 		var pluginObjects = new ConcurrentHashMap<Class<? extends Plugin>, Plugin>();
+		var started = System.nanoTime();
 		var pluginProcessor = new JPMSPlugins(layer);
 		var sorted = pluginProcessor.sorted();
+		timings.record(id, Phase.SORT_PLUGINS, started);
 		var it = sorted.iterator();
 		
 		while(it.hasNext()) {
@@ -693,42 +1386,263 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 			var context = new ChildPluginContext(pluginLayer, pluginObjects, parents);
 			PluginContextProviderImpl.current.set(context);
 			try {
-			
-				var pluginProvider = it.next().getProvider();
-				var type = pluginProvider.type();
-				var modLayer = type.getModule().getLayer();
-				
-				if(!modLayer.equals(layer)) {
-					if(LOG.trace())
-						LOG.trace("Skipping plugin `{0}` because it is in a different layer.", type.getName());
-					continue;
-				}
+				instantiatePlugin(pluginLayer, parents, layer, it.next(), context).ifPresent(pluginLayer.pluginRefs::add);
+			}
+			finally {
+				PluginContextProviderImpl.current.set(context);				
+			}
+		}
+		
+	}
 
-				/* The is where the plugin is actually instantiated */
-				Plugin plugin;
-				if(pluginInitializer.isPresent()) {
-					LOG.debug("Loading plugin `{0}` using custom initializer", type.getName());
-					plugin = pluginInitializer.get().initialize(pluginProvider, pluginLayer, parents);
-					
-				}
-				else {
-					LOG.debug("Loading plugin `{0}`", type.getName());
-					plugin = pluginProvider.get();
+	/**
+	 * Instantiate and then open all plugins in a layer using the boot pool. A plugin
+	 * is only instantiated (and later opened) once all of the plugins in the modules it
+	 * requires have been. All plugins are instantiated before any are opened, and
+	 * {@link DefaultLayerImpl#pluginRefs} keeps the same order as a serial load.
+	 * <p>
+	 * As soon as any plugin fails, those not yet started (including all that depend on
+	 * it) are skipped, and the first failure is thrown.
+	 */
+	private void loadAndOpenPluginsConcurrently(DefaultLayerImpl pluginLayer, String id, Set<ModuleLayer> parents, ModuleLayer layer) {
+
+		LOG.info("Loading plugins for layer `{0}` concurrently", id);
+
+		var executor = bootExecutor();
+		var callerLoader = Thread.currentThread().getContextClassLoader();
+		var pluginObjects = new ConcurrentHashMap<Class<? extends Plugin>, Plugin>();
+		var started = System.nanoTime();
+		var pluginProcessor = new JPMSPlugins(layer);
+		var sorted = pluginProcessor.sorted();
+		timings.record(id, Phase.SORT_PLUGINS, started);
+		
+		var loading = new LinkedHashMap<JPMSNode, CompletableFuture<Optional<PluginRef>>>();
+		for(var node : sorted) {
+			loading.put(node, CompletableFuture.allOf(upstreamOf(pluginProcessor, node, loading)).thenApplyAsync(v -> {
+				/* Workers get the same context loader as the thread that would
+				 * have loaded the plugin serially
+				 */
+				var thread = Thread.currentThread();
+				var was = thread.getContextClassLoader();
+				var context = new ChildPluginContext(pluginLayer, pluginObjects, parents);
+				thread.setContextClassLoader(callerLoader);
+				PluginContextProviderImpl.current.set(context);
+				try {
+					return instantiatePlugin(pluginLayer, parents, layer, node, context);
 				}
-	
-				pluginLayer.pluginRefs.add(new PluginRef(plugin, context));
-				pluginObjects.put(plugin.getClass(), plugin);
-				if(this.pluginObjects.put(plugin.getClass(), plugin) != null) {
-					throw new IllegalStateException(MessageFormat.format("Plugin `{0}` found more than once.",  plugin.getClass().getName()));
+				finally {
+					PluginContextProviderImpl.current.set(null);
+					thread.setContextClassLoader(was);
 				}
-	
-				LOG.info("Loaded plugin `{0}`", plugin.getClass().getName());
+			}, executor));
+		}
+		awaitAll(loading.values(), () -> MessageFormat.format("Failed to load plugins for layer `{0}`.", id));
+		loading.values().forEach(f -> f.join().ifPresent(pluginLayer.pluginRefs::add));
+		
+		LOG.info("Initialising plugins in layer `{0}` concurrently", id);
+		var opening = new LinkedHashMap<JPMSNode, CompletableFuture<Void>>();
+		loading.forEach((node, f) -> f.join().ifPresent(ref -> 
+			opening.put(node, CompletableFuture.allOf(upstreamOf(pluginProcessor, node, opening)).thenRunAsync(() -> openPlugin(pluginLayer, ref), executor))
+		));
+		awaitAll(opening.values(), () -> MessageFormat.format("Failed to open plugins for layer `{0}`.", id));
+	}
+
+	private static CompletableFuture<?>[] upstreamOf(JPMSPlugins plugins, JPMSNode node, Map<JPMSNode, ? extends CompletableFuture<?>> futures) {
+		return plugins.upstream(node).stream().
+				map(futures::get).
+				filter(Objects::nonNull).
+				toArray(CompletableFuture<?>[]::new);
+	}
+
+	private static void awaitAll(Collection<? extends CompletableFuture<?>> futures, Supplier<String> message) {
+		var failed = new CompletableFuture<Void>();
+		futures.forEach(f -> f.whenComplete((v, e) -> {
+			if(e != null) {
+				failed.completeExceptionally(e);
 			}
-			finally {
-				PluginContextProviderImpl.current.set(context);				
+		}));
+		try {
+			CompletableFuture.anyOf(CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)), failed).join();
+		}
+		catch(CompletionException ce) {
+			/* Cancelled tasks that have not yet started never run */
+			futures.forEach(f -> f.cancel(false));
+			var cause = ce.getCause();
+			while(cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
 			}
+			if(cause instanceof RuntimeException re)
+				throw re;
+			else if(cause instanceof Error err)
+				throw err;
+			else
+				throw new IllegalStateException(message.get(), cause);
 		}
+	}
+
+	private Optional<PluginRef> instantiatePlugin(DefaultLayerImpl pluginLayer, Set<ModuleLayer> parents, ModuleLayer layer, 
+			JPMSNode node, ChildPluginContext context) {
+		var pluginProvider = node.getProvider();
+		var type = pluginProvider.type();
+		var modLayer = type.getModule().getLayer();
+		
+		if(!modLayer.equals(layer)) {
+			if(LOG.trace())
+				LOG.trace("Skipping plugin `{0}` because it is in a different layer.", type.getName());
+			return Optional.empty();
+		}
+
+		/* The is where the plugin is actually instantiated */
+		var started = System.nanoTime();
+		Plugin plugin;
+		if(pluginInitializer.isPresent()) {
+			LOG.debug("Loading plugin `{0}` using custom initializer", type.getName());
+			plugin = pluginInitializer.get().initialize(pluginProvider, pluginLayer, parents);
+			
+		}
+		else {
+			LOG.debug("Loading plugin `{0}`", type.getName());
+			plugin = pluginProvider.get();
+		}
+		timings.record(pluginLayer.id(), type.getName(), Phase.LOAD_PLUGIN, started);
+
+		context.pluginObjects.put(plugin.getClass(), plugin);
+		if(this.pluginObjects.put(plugin.getClass(), plugin) != null) {
+			throw new IllegalStateException(MessageFormat.format("Plugin `{0}` found more than once.",  plugin.getClass().getName()));
+		}
+
+		LOG.info("Loaded plugin `{0}`", plugin.getClass().getName());
+		return Optional.of(new PluginRef(plugin, context));
+	}
+
+	private void openPlugin(ChildLayer layerDef, PluginRef ref) {
+		LOG.info("    {0}", ref.plugin().getClass().getName());
+		runWithLoader(layerDef.loader(), () -> { 
+			PluginContextProviderImpl.current.set(ref.context());
+			var started = System.nanoTime();
+			var evt = new BootlaceEvents.PluginLifecycle();
+			evt.begin();
+			try {
+				ref.plugin().open(ref.context());
+			}
+			catch(RuntimeException re) {
+				throw re;
+			}
+			catch(Exception e) {
+				throw new Exceptions.FailedToOpenPlugin(ref, e);
+			}
+			finally { 
+				PluginContextProviderImpl.current.set(null);
+				timings.record(layerDef.id(), ref.plugin().getClass().getName(), Phase.OPEN_PLUGIN, started);
+				evt.commitIfEnabled(layerDef.id(), ref.plugin(), "open");
+			}	
+		});
+	}
+
+	/**
+	 * Open layers concurrently, ordered by their parents. Each layer is opened on
+	 * the boot pool as soon as {@link #afterOpen(ChildLayer)} has been run for all
+	 * of its parents, so as with a serial boot, no plugin is opened before the plugins
+	 * in its parent layers are fully open. {@link #afterOpen(ChildLayer)} (and so all
+	 * listener callbacks) are still run on this thread, in the order the layers were
+	 * declared, although always after their parents.
+	 * 
+	 * @param toOpen layers to open
+	 */
+	private void openConcurrently(Collection<ChildLayer> toOpen) {
+		var executor = bootExecutor();
+		var futures = new ConcurrentHashMap<String, CompletableFuture<ChildLayer>>();
+		var byId = toOpen.stream().collect(Collect.toLinkedMap(ChildLayer::id, Function.identity()));
+		
+		LOG.info("Opening {0} layers using up to {1} threads", toOpen.size(), bootThreads);
 		
+		var afterOpened = new HashMap<String, CompletableFuture<ChildLayer>>();
+		toOpen.forEach(l -> afterOpened.put(l.id(), new CompletableFuture<>()));
+		
+		opening = futures;
+		try {
+			toOpen.forEach(l -> scheduleOpen(l, byId, futures, p -> afterOpened.get(p.id()), new LinkedHashSet<>(), executor, l2 -> open(l2, baseDir)));
+			for(var layer : parentsFirst(byId)) {
+				try {
+					afterOpen(futures.get(layer.id()).join());
+					afterOpened.get(layer.id()).complete(layer);
+				}
+				catch(RuntimeException | Error e) {
+					futures.values().forEach(f -> f.cancel(false));
+					afterOpened.values().forEach(f -> f.cancel(false));
+					var cause = e instanceof CompletionException ? e.getCause() : e;
+					if(cause instanceof RuntimeException re)
+						throw re;
+					else if(cause instanceof Error err)
+						throw err;
+					else
+						throw new IllegalStateException(MessageFormat.format("Failed to open layer `{0}`.", layer.id()), cause);
+				}
+			}
+		}
+		finally {
+			opening = Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Schedule a layer to be opened once its parents have been scheduled and are
+	 * ready, where what <i>ready</i> means is decided by the caller.
+	 * 
+	 * @param layer layer
+	 * @param byId all layers being opened
+	 * @param futures open futures so far
+	 * @param ready supplies the future that must complete before children of a parent may open
+	 * @param visiting layers being visited, to detect cycles
+	 * @param executor executor
+	 * @param task what to do to open the layer
+	 * @return future
+	 */
+	private CompletableFuture<ChildLayer> scheduleOpen(ChildLayer layer, Map<String, ChildLayer> byId,
+			Map<String, CompletableFuture<ChildLayer>> futures, Function<ChildLayer, CompletableFuture<?>> ready,
+			Set<String> visiting, Executor executor, Consumer<ChildLayer> task) {
+		var future = futures.get(layer.id());
+		if(future == null) {
+			if(!visiting.add(layer.id())) {
+				throw new IllegalStateException(MessageFormat.format("Layer `{0}` has a circular parent dependency.", layer.id()));
+			}
+			var parentFutures = layer.parents().stream().
+					map(byId::get).
+					filter(Objects::nonNull).
+					map(p -> {
+						scheduleOpen(p, byId, futures, ready, visiting, executor, task);
+						return ready.apply(p);
+					}).
+					toArray(CompletableFuture<?>[]::new);
+			
+			future = CompletableFuture.allOf(parentFutures).thenApplyAsync(v -> {
+				task.accept(layer);
+				return layer;
+			}, executor);
+			futures.put(layer.id(), future);
+			visiting.remove(layer.id());
+		}
+		return future;
+	}
+
+	synchronized ForkJoinPool bootExecutor() {
+		if(bootPool == null) {
+			bootPool = new ForkJoinPool(bootThreads, pool -> {
+				var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("BootlaceBoot-" + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+		}
+		return bootPool;
+	}
+
+	private void fireListeners(Consumer<Listener> event) {
+		/* Layers may be opened or closed on any thread, but listeners
+		 * are never called concurrently
+		 */
+		synchronized(listenerLock) {
+			root.listeners.forEach(event);
+		}
 	}
 
 	private Set<ModuleLayer> parents(ChildLayer layer) {
@@ -736,6 +1650,23 @@ public final class RootLayerImpl extends AbstractLayer implements RootLayer {
 
 		for (String parent : layer.parents()) {
 			ModuleLayer parentLayer = moduleLayers.get(parent);
+			if (parentLayer == null) {
+				/* Parents may have been added by a contributed descriptor, so
+				 * might still be opening when booting concurrently
+				 */
+				var parentFuture = opening.get(parent);
+				if(parentFuture != null) {
+					parentFuture.join();
+					parentLayer = moduleLayers.get(parent);
+				}
+			}
+			if (parentLayer == null) {
+				var lazyParent = getLayerOr(parent).filter(this::isLazyPending);
+				if(lazyParent.isPresent()) {
+					activate(lazyParent.get());
+					parentLayer = moduleLayers.get(parent);
+				}
+			}
 			if (parentLayer == null) {
 				throw new IllegalArgumentException(
 						"Layer `" + layer.id() + "`: parent layer `" + parent + "` not configured yet");
@@ -0,0 +1,268 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.sshtools.bootlace.api.ChildLayer;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.api.PluginRef;
+
+/**
+ * Closes all open layers when the root is shutdown. A layer is only closed once every
+ * layer that has it as a parent has been closed, but otherwise independent layers may
+ * be closed concurrently.
+ * <p>
+ * Each plugin's <code>beforeClose()</code> and <code>close()</code> is given a deadline,
+ * as is the shutdown as a whole. Plugins that overrun have their stack captured and
+ * logged at warning, shutdown moves on without waiting for them, and their later steps
+ * are skipped. Layers that are still closing when the overall deadline passes carry on in
+ * the background, but skip any plugin steps they have not yet started. When not closing in
+ * parallel, layers are closed one at a time on a single thread, so the overall deadline
+ * still applies.
+ */
+final class ShutdownCoordinator {
+	
+	record PluginStop(String layer, String plugin, String phase, long nanos, boolean overran) {
+		
+		@Override
+		public String toString() {
+			return String.format("%10.3fms  %-12s %s %s%s", nanos / 1_000_000d, phase, layer, plugin, overran ? " (overran)" : "");
+		}
+	}
+
+	private final static Log LOG = Logs.of(BootLog.LAYERS);
+	
+	private final Duration pluginTimeout;
+	private final long deadline;
+	private final ExecutorService executor;
+	private final ExecutorService closing;
+	private final Set<PluginRef> overran = ConcurrentHashMap.newKeySet();
+	private final ConcurrentLinkedQueue<PluginStop> stops = new ConcurrentLinkedQueue<>();
+
+	ShutdownCoordinator(Duration timeout, Duration pluginTimeout, boolean parallel) {
+		this.pluginTimeout = pluginTimeout;
+		this.deadline = System.nanoTime() + timeout.toNanos();
+		
+		var threads = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			var thread = new Thread(r, "BootlaceShutdown-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = Executors.newCachedThreadPool(factory);
+		this.closing = parallel ? executor : Executors.newSingleThreadExecutor(factory);
+	}
+
+	/**
+	 * Close layers, children first. Any failure to close a layer is logged, and does
+	 * not prevent other layers from closing. 
+	 * 
+	 * @param layers open layers
+	 * @param closer closes a single layer
+	 */
+	void shutdown(Collection<ChildLayer> layers, Consumer<ChildLayer> closer) {
+		var started = System.nanoTime();
+		var futures = new HashMap<String, CompletableFuture<ChildLayer>>();
+		var byId = layers.stream().collect(Collectors.toMap(ChildLayer::id, l -> l));
+		
+		LOG.info("Closing {0} layers", layers.size());
+		
+		try {
+			layers.forEach(l -> schedule(l, byId, futures, new HashSet<>(), closer));
+			try {
+				CompletableFuture.allOf(futures.values().toArray(CompletableFuture<?>[]::new)).get(Math.max(0, remaining()), TimeUnit.NANOSECONDS);
+			}
+			catch(TimeoutException te) {
+				LOG.warning("Shutdown deadline passed, layers still open: {0}", 
+						String.join(", ", futures.entrySet().stream().filter(e -> !e.getValue().isDone()).map(Map.Entry::getKey).sorted().toList()));
+			}
+			catch(ExecutionException ee) {
+				/* Failures are logged as each layer closes */
+			}
+			catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				LOG.warning("Interrupted waiting for layers to close.");
+			}
+		}
+		finally {
+			/* Layers still closing once the deadline has passed skip their plugin steps, 
+			 * but still need the executor to finish
+			 */
+			CompletableFuture.allOf(futures.values().toArray(CompletableFuture<?>[]::new)).
+				whenComplete((v, e) -> {
+					closing.shutdown();
+					executor.shutdown();
+				});
+		}
+		
+		LOG.info("Shutdown took {0}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		if(!overran.isEmpty()) {
+			LOG.warning("Plugin shutdown timings: " + System.lineSeparator() + report());
+		}
+		else if(LOG.debug()) {
+			LOG.debug("Plugin shutdown timings: " + System.lineSeparator() + report());
+		}
+	}
+
+	/**
+	 * Run a single plugin shutdown step, waiting no longer than the per-plugin deadline 
+	 * or what is left of the overall deadline, whichever is sooner. Steps for a plugin
+	 * that has already overrun are skipped.
+	 * 
+	 * @param layer layer
+	 * @param ref plugin
+	 * @param phase name of step
+	 * @param task task
+	 */
+	void call(ChildLayer layer, PluginRef ref, String phase, Runnable task) {
+		var name = ref.plugin().getClass().getName();
+		var remaining = remaining();
+		if(remaining <= 0) {
+			LOG.warning("Shutdown deadline passed, skipping {0} of {1} in layer `{2}`", phase, name, layer.id());
+			stops.add(new PluginStop(layer.id(), name, phase, 0, true));
+			return;
+		}
+		if(overran.contains(ref)) {
+			LOG.warning("{0} in layer `{1}` overran a previous step, skipping {2}", name, layer.id(), phase);
+			stops.add(new PluginStop(layer.id(), name, phase, 0, true));
+			return;
+		}
+		
+		var thread = new AtomicReference<Thread>();
+		var started = System.nanoTime();
+		var future = CompletableFuture.runAsync(() -> {
+			thread.set(Thread.currentThread());
+			task.run();
+		}, executor);
+		var wait = Math.min(pluginTimeout.toNanos(), remaining);
+		
+		try {
+			future.get(wait, TimeUnit.NANOSECONDS);
+			stops.add(new PluginStop(layer.id(), name, phase, System.nanoTime() - started, false));
+		}
+		catch(TimeoutException te) {
+			var blocked = thread.get();
+			overran.add(ref);
+			stops.add(new PluginStop(layer.id(), name, phase, System.nanoTime() - started, true));
+			LOG.warning(MessageFormat.format("{0} of {1} in layer `{2}` did not complete within {3}ms, abandoning it.{4}", 
+					phase, name, layer.id(), TimeUnit.NANOSECONDS.toMillis(wait), 
+					blocked == null ? "" : stack(blocked.getStackTrace())));
+			if(blocked != null) {
+				blocked.interrupt();
+			}
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted.", ie);
+		}
+		catch(ExecutionException ee) {
+			stops.add(new PluginStop(layer.id(), name, phase, System.nanoTime() - started, false));
+			if(ee.getCause() instanceof RuntimeException re)
+				throw re;
+			else if(ee.getCause() instanceof Error err)
+				throw err;
+			else
+				throw new IllegalStateException(ee.getCause());
+		}
+	}
+
+	/**
+	 * Get how long each plugin took to shutdown, longest first.
+	 * 
+	 * @return plugin shutdown timings
+	 */
+	List<PluginStop> stops() {
+		return stops.stream().sorted(Comparator.comparingLong(PluginStop::nanos).reversed()).toList();
+	}
+	
+	/**
+	 * Get a textual report of which plugins held up shutdown, longest first.
+	 * 
+	 * @return report
+	 */
+	String report() {
+		var bldr = new StringBuilder();
+		stops().forEach(s -> bldr.append(s).append(System.lineSeparator()));
+		return bldr.toString();
+	}
+
+	private CompletableFuture<ChildLayer> schedule(ChildLayer layer, Map<String, ChildLayer> byId, 
+			Map<String, CompletableFuture<ChildLayer>> futures, Set<String> visiting, Consumer<ChildLayer> closer) {
+		var future = futures.get(layer.id());
+		if(future == null) {
+			if(!visiting.add(layer.id())) {
+				throw new IllegalStateException(MessageFormat.format("Layer `{0}` has a circular parent dependency.", layer.id()));
+			}
+			var childFutures = byId.values().stream().
+					filter(l -> l.parents().contains(layer.id())).
+					map(l -> schedule(l, byId, futures, visiting, closer)).
+					toArray(CompletableFuture<?>[]::new);
+			
+			future = CompletableFuture.allOf(childFutures).handle((v, e) -> null).thenApplyAsync(v -> {
+				try {
+					closer.accept(layer);
+				}
+				catch(RuntimeException | Error e) {
+					LOG.error(MessageFormat.format("Failed to close layer `{0}`.", layer.id()), e);
+				}
+				return layer;
+			}, closing);
+			futures.put(layer.id(), future);
+			visiting.remove(layer.id());
+		}
+		return future;
+	}
+	
+	private long remaining() {
+		return deadline - System.nanoTime();
+	}
+	
+	private static String stack(StackTraceElement[] stack) {
+		return Arrays.stream(stack).
+				map(el -> System.lineSeparator() + "        at " + el).
+				collect(Collectors.joining());
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.LocalRepository;
+import com.sshtools.bootlace.api.Logs;
+import com.sshtools.bootlace.api.Logs.BootLog;
+import com.sshtools.bootlace.api.Logs.Log;
+import com.sshtools.bootlace.api.RemoteRepository.UpdatePolicy;
+
+/**
+ * Keeps a copy of each <code>maven-metadata.xml</code> fetched for a snapshot, in 
+ * <code>snapshots/&lt;repository&gt;</code> in the root layer's cache directory. The copy is used 
+ * as is until the repository's {@link UpdatePolicy} interval has passed since it was 
+ * last checked, after which it is refreshed with a conditional request. If the
+ * repository cannot be reached, a stale copy is used rather than failing.
+ * <p>
+ * Setting the system property <code>bootlace.refresh</code> to <code>true</code> checks
+ * all metadata again.
+ */
+final class SnapshotCache {
+	private final static Log LOG = Logs.of(BootLog.RESOLUTION);
+	
+	/* Only used by repositories built outside of a root layer */
+	private final static class Default {
+		private final static SnapshotCache DEFAULT = new SnapshotCache(Bootlace.defaultCacheDirectory().resolve("snapshots"));
+	}
+	
+	static SnapshotCache get() {
+		return Default.DEFAULT;
+	}
+	
+	private record Parsed(FileTime modified, SnapshotMetaData metadata) {}
+	
+	private final Path directory;
+	private final Map<Path, ReentrantLock> locks = new ConcurrentHashMap<>();
+	private final Map<Path, Parsed> parsed = new ConcurrentHashMap<>();
+
+	SnapshotCache(Path directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * Get the metadata for an unresolved snapshot, from the cache if it is recent enough, 
+	 * otherwise from the repository. 
+	 * 
+	 * @param httpClientFactory http client factory
+	 * @param client client for the repository
+	 * @param repository repository id
+	 * @param policy repository update policy
+	 * @param gav snapshot
+	 * @param uri location of metadata
+	 * @return metadata
+	 * @throws IOException on error, or {@link java.nio.file.NoSuchFileException} if the repository has no metadata
+	 */
+	SnapshotMetaData metadata(HttpClientFactory httpClientFactory, HttpClient client, String repository, UpdatePolicy policy, GAV gav, URI uri) throws IOException {
+		var dir = directory.resolve(repository.replaceAll("[^A-Za-z0-9._-]", "_")).resolve(LocalRepository.gavPath(gav).getParent());
+		var xml = dir.resolve("maven-metadata.xml");
+		var props = dir.resolve("maven-metadata.properties");
+		
+		var lock = locks.computeIfAbsent(dir, k -> new ReentrantLock());
+		lock.lock();
+		try {
+			var cached = Files.exists(xml) && Files.exists(props);
+			if(cached && !Boolean.getBoolean("bootlace.refresh")) {
+				var age = Duration.ofMillis(System.currentTimeMillis() - Files.getLastModifiedTime(props).toMillis());
+				if(!age.isNegative() && age.compareTo(policy.interval()) < 0) {
+					if(LOG.debug())
+						LOG.debug("Using cached snapshot metadata for `{0}`, checked {1} ago", gav, age);
+					return parse(xml);
+				}
+			}
+			
+			var validators = new Properties();
+			if(cached) {
+				try(var in = Files.newBufferedReader(props, StandardCharsets.UTF_8)) {
+					validators.load(in);
+				}
+			}
+			
+			var request = httpClientFactory.request(uri).
+					GET().
+					header("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:123.0) Gecko/20100101 Firefox/123.0");
+			if(cached) {
+				var etag = validators.getProperty("etag");
+				if(etag != null)
+					request.header("If-None-Match", etag);
+				var lastModified = validators.getProperty("last-modified");
+				if(lastModified != null)
+					request.header("If-Modified-Since", lastModified);
+			}
+			
+			HttpResponse<Path> response;
+			var tmp = Files.createTempFile(Files.createDirectories(dir), "maven-metadata", ".tmp");
+			try {
+				try {
+					response = client.send(request.build(), HttpResponse.BodyHandlers.ofFile(tmp));
+				}
+				catch(IOException ioe) {
+					if(cached) {
+						LOG.warning(MessageFormat.format("Could not refresh snapshot metadata for `{0}` from {1}, using cached copy.", gav, uri), ioe);
+						return parse(xml);
+					}
+					throw ioe;
+				}
+				catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				
+				switch(response.statusCode()) {
+				case 304:
+					if(LOG.debug())
+						LOG.debug("Snapshot metadata for `{0}` has not changed", gav);
+					Files.setLastModifiedTime(props, FileTime.fromMillis(System.currentTimeMillis()));
+					return parse(xml);
+				case 200:
+					/* Parse before replacing so a bad download never replaces a good copy */
+					SnapshotMetaData metadata;
+					try(var in = Files.newInputStream(tmp)) {
+						metadata = SnapshotMetaData.of(in);
+					}
+					Files.move(tmp, xml, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					validators.clear();
+					response.headers().firstValue("ETag").ifPresent(v -> validators.setProperty("etag", v));
+					response.headers().firstValue("Last-Modified").ifPresent(v -> validators.setProperty("last-modified", v));
+					try(var out = Files.newBufferedWriter(props, StandardCharsets.UTF_8)) {
+						validators.store(out, "Validators for " + uri);
+					}
+					parsed.put(xml, new Parsed(Files.getLastModifiedTime(xml), metadata));
+					return metadata;
+				case 404:
+					throw new NoSuchFileException(uri.toString());
+				default:
+					throw new IOException("Unexpected status " + response.statusCode() + " for " + uri);
+				}
+			}
+			finally {
+				Files.deleteIfExists(tmp);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	private SnapshotMetaData parse(Path xml) throws IOException {
+		var modified = Files.getLastModifiedTime(xml);
+		var was = parsed.get(xml);
+		if(was != null && was.modified().equals(modified)) {
+			return was.metadata();
+		}
+		try(var in = Files.newInputStream(xml)) {
+			var metadata = SnapshotMetaData.of(in);
+			parsed.put(xml, new Parsed(modified, metadata));
+			return metadata;
+		}
+	}
+}
@@ -26,10 +26,13 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import com.sshtools.bootlace.api.GAV;
 import com.sshtools.bootlace.api.XML;
+import com.sshtools.bootlace.api.XML.Fragment;
 
 public final class SnapshotMetaData {
 
@@ -56,7 +59,8 @@ public final class SnapshotMetaData {
 
 	private SnapshotMetaData(InputStream in) {
 
-		var project = XML.of(in);
+		var project = new Fragment("metadata", "", XML.select(in, "metadata/groupId", "metadata/artifactId", "metadata/versioning").
+				values().stream().flatMap(List::stream).toList());
 
 		/* GAV */
 		var artifactId = project.value("artifactId")
@@ -66,7 +70,6 @@ public final class SnapshotMetaData {
 		gav = GAV.ofParts(groupId, artifactId);
 
 		var versioning = project.child("versioning").get();
-		versioning.dumpEl();;
 		try {
 			updated = new SimpleDateFormat(UPDATED_FMT).parse(versioning.value("lastUpdated").get()).toInstant();
 
@@ -103,6 +106,10 @@ public final class SnapshotMetaData {
 	public SnapshotVersion get(String extension) {
 		return get("", extension);
 	}
+	public Optional<SnapshotVersion> find(String classifier, String extension) {
+		return Optional.ofNullable(versions.get(new SnapshotVersionKey(extension, classifier)));
+	}
+
 	public SnapshotVersion get(String classifier, String extension) {
 		var ver = versions.get(new SnapshotVersionKey(extension, classifier));
 		if(ver == null) {
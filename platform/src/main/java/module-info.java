@@ -38,6 +38,7 @@ module com.sshtools.bootlace.platform {
 	exports com.sshtools.bootlace.platform;
 	exports com.sshtools.bootlace.platform.jini;
 	requires transitive java.net.http;
+	requires jdk.jfr;
 	uses Plugin;
 	uses LocalRepositoryBuilder;
 	uses RemoteRepositoryBuilder;
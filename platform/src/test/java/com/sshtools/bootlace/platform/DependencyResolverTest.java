@@ -0,0 +1,304 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.sshtools.bootlace.api.GAV;
+
+public class DependencyResolverTest {
+	
+	/* Effective models of releases are shared by all resolvers, so each test uses its own group */
+	
+	@Test
+	void testNearestWins() throws IOException {
+		var poms = new Poms("test.nearest");
+		poms.add("a:1.0", "c:1.0");
+		poms.add("b:1.0", "d:1.0");
+		poms.add("d:1.0", "c:2.0");
+		poms.add("c:1.0");
+		poms.add("c:2.0");
+		assertEquals(poms.gavs("a:1.0", "b:1.0", "c:1.0", "d:1.0"), poms.resolve("root:1.0", "a:1.0", "b:1.0"));
+	}
+	
+	@Test
+	void testFirstDeclarationWins() throws IOException {
+		var poms = new Poms("test.first");
+		poms.add("a:1.0", "c:1.0");
+		poms.add("b:1.0", "c:2.0");
+		poms.add("c:1.0");
+		poms.add("c:2.0");
+		assertEquals(poms.gavs("a:1.0", "b:1.0", "c:1.0"), poms.resolve("root:1.0", "a:1.0", "b:1.0"));
+	}
+	
+	@Test
+	void testRootManagementOverridesTransitive() throws IOException {
+		var poms = new Poms("test.managed");
+		poms.add("a:1.0", "c:1.0");
+		poms.add("c:3.0");
+		var root = poms.pom("root:1.0", """
+				<dependencyManagement>
+					<dependencies>
+						<dependency>
+							<groupId>test.managed</groupId>
+							<artifactId>c</artifactId>
+							<version>3.0</version>
+						</dependency>
+					</dependencies>
+				</dependencyManagement>
+				""", "a:1.0");
+		assertEquals(poms.gavs("a:1.0", "c:3.0"), poms.resolver().resolve(root, List.of()));
+	}
+	
+	@Test
+	void testPinnedWins() throws IOException {
+		var poms = new Poms("test.pinned");
+		poms.add("a:1.0", "c:1.0");
+		poms.add("c:1.0");
+		poms.add("c:1.1");
+		var root = poms.pom("root:1.0", "", "a:1.0");
+		assertEquals(poms.gavs("a:1.0", "c:1.1"), poms.resolver().resolve(root, poms.gavs("c:1.1")));
+	}
+	
+	@Test
+	void testScopesOptionalAndExclusions() throws IOException {
+		var poms = new Poms("test.scopes");
+		poms.add("b:1.0", "e:1.0");
+		poms.add("e:1.0");
+		var root = poms.pom("root:1.0", """
+				<dependencies>
+					<dependency>
+						<groupId>test.scopes</groupId>
+						<artifactId>t</artifactId>
+						<version>1.0</version>
+						<scope>test</scope>
+					</dependency>
+					<dependency>
+						<groupId>test.scopes</groupId>
+						<artifactId>o</artifactId>
+						<version>1.0</version>
+						<optional>true</optional>
+					</dependency>
+					<dependency>
+						<groupId>test.scopes</groupId>
+						<artifactId>b</artifactId>
+						<version>1.0</version>
+						<exclusions>
+							<exclusion>
+								<groupId>test.scopes</groupId>
+								<artifactId>e</artifactId>
+							</exclusion>
+						</exclusions>
+					</dependency>
+				</dependencies>
+				""");
+		assertEquals(poms.gavs("b:1.0"), poms.resolver().resolve(root, List.of()));
+	}
+	
+	@Test
+	void testParentPropertiesAndImportedBom() throws IOException {
+		var poms = new Poms("test.parent");
+		poms.put("bom:1.0", """
+				<packaging>pom</packaging>
+				<dependencyManagement>
+					<dependencies>
+						<dependency>
+							<groupId>test.parent</groupId>
+							<artifactId>a</artifactId>
+							<version>4.0</version>
+						</dependency>
+					</dependencies>
+				</dependencyManagement>
+				""");
+		poms.put("parent:1.0", """
+				<packaging>pom</packaging>
+				<properties>
+					<b.version>2.0</b.version>
+				</properties>
+				<dependencyManagement>
+					<dependencies>
+						<dependency>
+							<groupId>test.parent</groupId>
+							<artifactId>bom</artifactId>
+							<version>1.0</version>
+							<type>pom</type>
+							<scope>import</scope>
+						</dependency>
+					</dependencies>
+				</dependencyManagement>
+				""");
+		poms.add("a:4.0");
+		poms.add("b:2.0");
+		var root = parse("""
+				<project>
+					<parent>
+						<groupId>test.parent</groupId>
+						<artifactId>parent</artifactId>
+						<version>1.0</version>
+					</parent>
+					<artifactId>root</artifactId>
+					<dependencies>
+						<dependency>
+							<groupId>${project.groupId}</groupId>
+							<artifactId>a</artifactId>
+						</dependency>
+						<dependency>
+							<groupId>test.parent</groupId>
+							<artifactId>b</artifactId>
+							<version>${b.version}</version>
+						</dependency>
+					</dependencies>
+				</project>
+				""");
+		assertEquals(poms.gavs("a:4.0", "b:2.0"), poms.resolver().resolve(root, List.of()));
+	}
+	
+	@Test
+	void testVersionRanges() throws IOException {
+		var poms = new Poms("test.ranges");
+		poms.add("a:1.5");
+		poms.add("b:2.0");
+		poms.add("c:1.2");
+		assertEquals(poms.gavs("a:1.5", "b:2.0", "c:1.2"), poms.resolve("root:1.0", "a:[1.5,2.0)", "b:(,2.0]", "c:[1.2]"));
+	}
+	
+	@Test
+	void testUnsupportedVersionRange() {
+		var poms = new Poms("test.unsupported");
+		assertThrows(IllegalArgumentException.class, () -> poms.resolve("root:1.0", "a:(,2.0)"));
+	}
+	
+	@Test
+	void testExclusiveBoundsAreNotUsed() {
+		assertEquals("2.0", DependencyResolver.version("(1.0,2.0]"));
+		assertEquals("1.0", DependencyResolver.version("[1.0,2.0),[3.0,4.0)"));
+		assertThrows(IllegalArgumentException.class, () -> DependencyResolver.version("(1.0,2.0)"));
+		assertThrows(IllegalArgumentException.class, () -> DependencyResolver.version("(1.0,)"));
+	}
+	
+	@Test
+	void testMissingPomUsesArtifactOnly() throws IOException {
+		var poms = new Poms("test.missing");
+		assertEquals(poms.gavs("a:1.0"), poms.resolve("root:1.0", "a:1.0"));
+	}
+	
+	@Test
+	void testSnapshotModelsAreNotShared() throws IOException {
+		var poms = new Poms("test.snapshot");
+		poms.add("lib:1.0-SNAPSHOT", "x:1.0");
+		poms.add("x:1.0");
+		poms.add("x:2.0");
+		assertEquals(poms.gavs("lib:1.0-SNAPSHOT", "x:1.0"), poms.resolve("root:1.0", "lib:1.0-SNAPSHOT"));
+		
+		/* A new build of the snapshot */
+		poms.add("lib:1.0-SNAPSHOT", "x:2.0");
+		assertEquals(poms.gavs("lib:1.0-SNAPSHOT", "x:2.0"), poms.resolve("root:1.0", "lib:1.0-SNAPSHOT"));
+	}
+	
+	@Test
+	void testModelsWithSnapshotParentsAreNotShared() throws IOException {
+		var poms = new Poms("test.snapshotparent");
+		poms.put("parent:1.0-SNAPSHOT", "<packaging>pom</packaging>" + Poms.dependencies("test.snapshotparent", "x:1.0"));
+		poms.put("lib:1.0", "", "test.snapshotparent:parent:1.0-SNAPSHOT");
+		poms.add("x:1.0");
+		poms.add("x:2.0");
+		assertEquals(poms.gavs("lib:1.0", "x:1.0"), poms.resolve("root:1.0", "lib:1.0"));
+		
+		poms.put("parent:1.0-SNAPSHOT", "<packaging>pom</packaging>" + Poms.dependencies("test.snapshotparent", "x:2.0"));
+		assertEquals(poms.gavs("lib:1.0", "x:2.0"), poms.resolve("root:1.0", "lib:1.0"));
+	}
+	
+	private final static class Poms {
+		private final String group;
+		private final Map<GAV, POM> poms = new HashMap<>();
+		
+		private Poms(String group) {
+			this.group = group;
+		}
+		
+		void add(String av, String... dependencies) {
+			var pom = pom(av, "", dependencies);
+			poms.put(pom.gav(), pom);
+		}
+		
+		void put(String av, String xml) {
+			put(av, xml, null);
+		}
+		
+		void put(String av, String xml, String parent) {
+			var parts = av.split(":");
+			var parentXml = "";
+			if(parent != null) {
+				var pparts = parent.split(":");
+				parentXml = "<parent><groupId>" + pparts[0] + "</groupId><artifactId>" + pparts[1] + "</artifactId><version>" + pparts[2] + "</version></parent>";
+			}
+			var pom = parse("<project>" + parentXml + "<groupId>" + group + "</groupId><artifactId>" + parts[0] + "</artifactId><version>" + parts[1] + "</version>" + xml + "</project>");
+			poms.put(pom.gav(), pom);
+		}
+		
+		POM pom(String av, String xml, String... dependencies) {
+			var parts = av.split(":");
+			return parse("<project><groupId>" + group + "</groupId><artifactId>" + parts[0] + "</artifactId><version>" + parts[1] + "</version>" + 
+					xml + dependencies(group, dependencies) + "</project>");
+		}
+		
+		List<GAV> resolve(String root, String... dependencies) throws IOException {
+			return resolver().resolve(pom(root, "", dependencies), List.of());
+		}
+		
+		DependencyResolver resolver() {
+			return new DependencyResolver(gav -> Optional.ofNullable(poms.get(gav)));
+		}
+		
+		List<GAV> gavs(String... avs) {
+			return Stream.of(avs).map(av -> GAV.ofSpec(group + ":" + av)).toList();
+		}
+		
+		static String dependencies(String group, String... dependencies) {
+			if(dependencies.length == 0) {
+				return "";
+			}
+			var buf = new StringBuilder("<dependencies>");
+			for(var dep : dependencies) {
+				var parts = dep.split(":");
+				buf.append("<dependency><groupId>" + group + "</groupId><artifactId>" + parts[0] + "</artifactId><version>" + parts[1] + "</version></dependency>");
+			}
+			buf.append("</dependencies>");
+			return buf.toString();
+		}
+	}
+	
+	private static POM parse(String xml) {
+		return POM.of(new ByteArrayInputStream(xml.strip().getBytes(StandardCharsets.UTF_8)));
+	}
+}
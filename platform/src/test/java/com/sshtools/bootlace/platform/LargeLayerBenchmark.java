@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sshtools.bootlace.api.ArtifactRef;
+import com.sshtools.bootlace.api.GAV;
+
+/**
+ * Resolves a single generated layer with many artifacts, as {@link LayerArtifactsImpl} 
+ * does at boot. Every artifact is an empty jar with an explicit path, and is also 
+ * referenced again by version only, as happens when artifacts depend on each other. No
+ * network access is needed, so the time is that of expansion itself.
+ * <p>
+ * Run with <code>org.openjdk.jmh.Main LargeLayerBenchmark</code> and the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeLayerBenchmark {
+	
+	@Param({ "100", "400", "1600" })
+	int artifacts;
+	
+	private Path dir;
+	private List<ArtifactRef> refs;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("bootlace-bench");
+		refs = new ArrayList<ArtifactRef>();
+		for(int i = 0 ; i < artifacts; i++) {
+			var gav = GAV.ofParts("com.acme.bench", "artifact-" + i, "1.0");
+			var jar = dir.resolve("artifact-" + i + "-1.0.jar");
+			try(var out = new JarOutputStream(Files.newOutputStream(jar))) {
+			}
+			refs.add(ArtifactRef.of(gav, jar));
+		}
+		for(int i = 0 ; i < artifacts; i++) {
+			refs.add(ArtifactRef.of(GAV.ofParts("com.acme.bench", "artifact-" + i, "1.0")));
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try(var walk = Files.walk(dir)) {
+			walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+				try {
+					Files.delete(p);
+				}
+				catch(IOException ioe) {
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	public void prepare() throws IOException {
+		var cache = Files.createTempDirectory(dir, "cache");
+		Bootlace.build("bench").
+			withCacheDirectory(cache).
+			withoutResolutionLocks().
+			withoutModuleCache().
+			withLayers(new DefaultLayerImpl.Builder("bench").
+					withBaseDirectory(dir).
+					withArtifactRefs(refs).
+					build()).
+			prepare();
+	}
+}
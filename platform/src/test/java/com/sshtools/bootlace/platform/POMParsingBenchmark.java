@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sshtools.bootlace.api.XML;
+
+/**
+ * Compares reading a POM with the streaming {@link XML#select(java.io.InputStream, String...)}
+ * used by {@link POM}, against building a DOM with {@link XML#of(java.io.InputStream)} and 
+ * walking it for the same information. <code>select</code> only reads the elements, 
+ * <code>stax</code> builds the whole {@link POM} from them. The POMs are generated, with a <code>build</code>
+ * section of similar size to the dependencies, as that is what the streaming reader skips.
+ * <p>
+ * Run with <code>org.openjdk.jmh.Main POMParsingBenchmark</code> and the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class POMParsingBenchmark {
+	
+	@Param({ "10", "100" })
+	int dependencies;
+	
+	private byte[] pom;
+
+	@Setup
+	public void setup() {
+		var bldr = new StringBuilder();
+		bldr.append("<project>");
+		bldr.append("<modelVersion>4.0.0</modelVersion>");
+		bldr.append("<parent><groupId>com.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>");
+		bldr.append("<artifactId>bench</artifactId>");
+		bldr.append("<properties>");
+		for(int i = 0 ; i < dependencies; i++) {
+			bldr.append("<dep").append(i).append(".version>1.").append(i).append("</dep").append(i).append(".version>");
+		}
+		bldr.append("</properties>");
+		bldr.append("<dependencyManagement><dependencies>");
+		for(int i = 0 ; i < dependencies; i++) {
+			dependency(bldr, "com.example.managed", i, "${dep" + i + ".version}");
+		}
+		bldr.append("</dependencies></dependencyManagement>");
+		bldr.append("<dependencies>");
+		for(int i = 0 ; i < dependencies; i++) {
+			dependency(bldr, "com.example.managed", i, null);
+		}
+		bldr.append("</dependencies>");
+		bldr.append("<build><plugins>");
+		for(int i = 0 ; i < dependencies; i++) {
+			bldr.append("<plugin><groupId>com.example.plugins</groupId><artifactId>plugin-").append(i).append("</artifactId>");
+			bldr.append("<configuration><arg>--one</arg><arg>--two</arg><nested><value>").append(i).append("</value></nested></configuration>");
+			bldr.append("<executions><execution><id>ex").append(i).append("</id><goals><goal>run</goal></goals></execution></executions>");
+			bldr.append("</plugin>");
+		}
+		bldr.append("</plugins></build>");
+		bldr.append("</project>");
+		pom = bldr.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Object select() {
+		return XML.select(new ByteArrayInputStream(pom), POM.PATHS);
+	}
+
+	@Benchmark
+	public POM stax() {
+		return POM.of(new ByteArrayInputStream(pom));
+	}
+
+	@Benchmark
+	public void dom(Blackhole bh) {
+		/* As POM read it before the streaming reader */
+		var project = XML.of(new ByteArrayInputStream(pom));
+		bh.consume(project.value("artifactId"));
+		project.child("parent").ifPresent(p -> bh.consume(p.value("version")));
+		project.child("properties").ifPresent(p -> p.children().forEach(c -> bh.consume(c.name())));
+		project.child("dependencyManagement").flatMap(d -> d.child("dependencies")).ifPresent(d -> dependencies(bh, d.children()));
+		project.child("dependencies").ifPresent(d -> dependencies(bh, d.children()));
+	}
+	
+	private static void dependencies(Blackhole bh, List<XML> dependencies) {
+		dependencies.forEach(dep -> {
+			bh.consume(dep.value("groupId"));
+			bh.consume(dep.value("artifactId"));
+			bh.consume(dep.value("version"));
+			bh.consume(dep.value("scope"));
+		});
+	}
+
+	private static void dependency(StringBuilder bldr, String groupId, int index, String version) {
+		bldr.append("<dependency><groupId>").append(groupId).append("</groupId><artifactId>artifact-").append(index).append("</artifactId>");
+		if(version != null) {
+			bldr.append("<version>").append(version).append("</version>");
+		}
+		bldr.append("</dependency>");
+	}
+}
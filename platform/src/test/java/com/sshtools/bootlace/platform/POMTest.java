@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.sshtools.bootlace.api.GAV;
+
+public class POMTest {
+
+	@Test
+	void testVersionIsNotTakenFromDependencies() {
+		var pom = pom("""
+				<project>
+					<groupId>com.acme</groupId>
+					<artifactId>app</artifactId>
+					<dependencies>
+						<dependency>
+							<groupId>com.acme</groupId>
+							<artifactId>lib</artifactId>
+							<version>2.0</version>
+						</dependency>
+					</dependencies>
+					<version>1.0</version>
+				</project>
+				""");
+		assertEquals(GAV.ofParts("com.acme", "app", "1.0"), pom.gav());
+		assertEquals(Set.of(GAV.ofParts("com.acme", "lib", "2.0")), pom.dependencies());
+	}
+
+	@Test
+	void testInheritsFromParent() {
+		var pom = pom("""
+				<project>
+					<parent>
+						<groupId>com.acme</groupId>
+						<artifactId>parent</artifactId>
+						<version>3.0</version>
+					</parent>
+					<artifactId>app</artifactId>
+					<packaging>bundle</packaging>
+					<properties>
+						<lib.version>2.1</lib.version>
+					</properties>
+				</project>
+				""");
+		assertEquals(GAV.ofParts("com.acme", "app", "3.0"), pom.gav());
+		assertEquals(Optional.of(GAV.ofParts("com.acme", "parent", "3.0")), pom.parent());
+		assertEquals("bundle", pom.packaging());
+		assertEquals(Map.of("lib.version", "2.1"), pom.properties());
+	}
+
+	@Test
+	void testManagedAndDeclaredDependencies() {
+		var pom = pom("""
+				<project>
+					<groupId>com.acme</groupId>
+					<artifactId>app</artifactId>
+					<version>1.0</version>
+					<dependencyManagement>
+						<dependencies>
+							<dependency>
+								<groupId>com.acme</groupId>
+								<artifactId>lib</artifactId>
+								<version>2.0</version>
+							</dependency>
+						</dependencies>
+					</dependencyManagement>
+					<dependencies>
+						<dependency>
+							<groupId>com.acme</groupId>
+							<artifactId>lib</artifactId>
+							<exclusions>
+								<exclusion>
+									<groupId>org.other</groupId>
+									<artifactId>*</artifactId>
+								</exclusion>
+							</exclusions>
+						</dependency>
+						<dependency>
+							<groupId>org.junit</groupId>
+							<artifactId>junit</artifactId>
+							<version>4.0</version>
+							<scope>test</scope>
+						</dependency>
+					</dependencies>
+				</project>
+				""");
+		assertEquals(1, pom.managedDependencies().size());
+		assertEquals(2, pom.declaredDependencies().size());
+		var lib = pom.declaredDependencies().get(0);
+		assertEquals(Optional.empty(), lib.version());
+		assertEquals(Set.of("org.other:*"), lib.exclusions());
+		assertEquals(Set.of(GAV.ofParts("com.acme", "lib", "2.0")), pom.dependencies());
+	}
+
+	@Test
+	void testNoArtifactId() {
+		assertThrows(IllegalArgumentException.class, () -> pom("<project><groupId>com.acme</groupId></project>"));
+	}
+
+	static POM pom(String xml) {
+		return POM.of(new ByteArrayInputStream(xml.strip().getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sshtools.bootlace.api.ArtifactRef;
+import com.sshtools.bootlace.api.GAV;
+
+public class ResolutionLockTest {
+	
+	@TempDir
+	Path dir;
+
+	@Test
+	void testValidWhenNothingChanged() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var lock = writeAndLoad(inputs, layer, ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar));
+		
+		assertTrue(lock.valid(inputs, gav -> false));
+	}
+
+	@Test
+	void testInvalidWhenDefinitionChanged() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var lock = writeAndLoad(inputs, layer, ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar));
+		
+		var changed = ResolutionLock.inputs(layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")), ArtifactRef.of(GAV.ofSpec("com.acme:b"))), dir);
+		assertNotEquals(inputs, changed);
+		assertFalse(lock.valid(changed, gav -> false));
+	}
+
+	@Test
+	void testInvalidWhenArtifactChanged() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var lock = writeAndLoad(inputs, layer, ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar));
+		
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 10000));
+		assertFalse(lock.valid(inputs, gav -> false));
+	}
+
+	@Test
+	void testInvalidWhenArtifactMissing() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var lock = writeAndLoad(inputs, layer, ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar));
+		
+		Files.delete(jar);
+		assertFalse(lock.valid(inputs, gav -> false));
+	}
+
+	@Test
+	void testInvalidWhenVerifiedChecksumDiffers() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var lock = writeAndLoad(inputs, layer, ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar));
+		
+		Checksums.record(jar, "0".repeat(64));
+		assertFalse(lock.valid(inputs, gav -> false));
+	}
+
+	@Test
+	void testInvalidWhenHigherLayersChanged() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var a = GAV.ofSpec("com.acme:a");
+		var b = GAV.ofSpec("com.acme:b");
+		var file = dir.resolve("layer.lock");
+		ResolutionLock.of(inputs, layer, List.of(ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar)), List.of(a), List.of(b)).get().write(file);
+		var lock = ResolutionLock.load(file).get();
+		
+		/* Only skipped artifacts are loaded above, as when locked */
+		assertTrue(lock.valid(inputs, b::equals));
+		/* An artifact this layer loads is now loaded above */
+		assertFalse(lock.valid(inputs, Set.of(a, b)::contains));
+		/* An artifact this layer skipped is no longer loaded above */
+		assertFalse(lock.valid(inputs, gav -> false));
+	}
+
+	@Test
+	void testDirectoryArtifactsAreNotLocked() throws IOException {
+		var classes = Files.createDirectories(dir.resolve("classes"));
+		var ref = ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), classes);
+		var layer = layer(ref);
+		
+		assertTrue(ResolutionLock.of(ResolutionLock.inputs(layer, dir), layer, List.of(ref), List.of(), List.of()).isEmpty());
+	}
+
+	@Test
+	void testResolvedSnapshotsAreNotLocked() throws IOException {
+		var jar = jar("a-1.0-SNAPSHOT.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0-SNAPSHOT")));
+		
+		assertTrue(ResolutionLock.of(ResolutionLock.inputs(layer, dir), layer, 
+				List.of(ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0-SNAPSHOT"), jar)), List.of(), List.of()).isEmpty());
+	}
+
+	@Test
+	void testUnversionedArtifactsAreNotLocked() throws IOException {
+		var jar = jar("a.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		
+		assertTrue(ResolutionLock.of(ResolutionLock.inputs(layer, dir), layer, 
+				List.of(ArtifactRef.of(GAV.ofSpec("com.acme:a"), jar)), List.of(), List.of()).isEmpty());
+	}
+
+	@Test
+	void testDeclaredSnapshotsAreLocked() throws IOException {
+		var jar = jar("a-1.0-SNAPSHOT.jar");
+		var ref = ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0-SNAPSHOT"), jar);
+		var layer = layer(ref);
+		
+		assertTrue(ResolutionLock.of(ResolutionLock.inputs(layer, dir), layer, List.of(ref), List.of(), List.of()).isPresent());
+	}
+
+	@Test
+	void testOtherFormatsAreIgnored() throws IOException {
+		var jar = jar("a-1.0.jar");
+		var layer = layer(ArtifactRef.of(GAV.ofSpec("com.acme:a")));
+		var inputs = ResolutionLock.inputs(layer, dir);
+		var file = dir.resolve("layer.lock");
+		ResolutionLock.of(inputs, layer, List.of(ArtifactRef.of(GAV.ofSpec("com.acme:a:1.0"), jar)), List.of(), List.of()).get().write(file);
+		
+		Files.writeString(file, Files.readString(file).replaceAll("(?m)^format=.*$", "format=1"));
+		assertTrue(ResolutionLock.load(file).isEmpty());
+	}
+	
+	private ResolutionLock writeAndLoad(String inputs, DefaultLayerImpl layer, ArtifactRef... finalArtifacts) throws IOException {
+		var file = dir.resolve("layer.lock");
+		ResolutionLock.of(inputs, layer, List.of(finalArtifacts), List.of(), List.of()).get().write(file);
+		return ResolutionLock.load(file).get();
+	}
+	
+	private Path jar(String name) throws IOException {
+		return Files.write(dir.resolve(name), new byte[] { 1, 2, 3, 4 });
+	}
+	
+	private static DefaultLayerImpl layer(ArtifactRef... artifacts) {
+		return new DefaultLayerImpl.Builder("test").withArtifactRefs(artifacts).build();
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright © 2023 JAdaptive Limited (support@jadaptive.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the “Software”), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies
+ * or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.sshtools.bootlace.platform;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sshtools.bootlace.api.Exceptions.ChecksumMismatch;
+import com.sshtools.bootlace.api.GAV;
+import com.sshtools.bootlace.api.Http.HttpClientFactory;
+import com.sshtools.bootlace.api.RemoteRepository;
+import com.sshtools.bootlace.api.Repository.ResolutionResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ResumableDownloadTest {
+	
+	private final static GAV ARTIFACT = GAV.ofSpec("com.acme:a:1.0");
+	private final static String PATH = "/com/acme/a/1.0/a-1.0.jar";
+	private final static String ETAG = "\"v1\"";
+	
+	@TempDir
+	Path dir;
+	
+	private final byte[] content = new byte[100000];
+	private final List<String> ranges = new CopyOnWriteArrayList<>();
+	private String published;
+	private HttpServer server;
+	private RemoteRepository repository;
+	private final HttpClientFactory httpClientFactory = () -> HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+	private Path partial;
+	private Path validator;
+	
+	@BeforeEach
+	void start() throws IOException {
+		new Random(1).nextBytes(content);
+		published = sha256(content);
+		
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		
+		repository = new RemoteRepositoryImpl.RemoteRepositoryBuilder().
+				withRoot(URI.create("http://localhost:" + server.getAddress().getPort() + "/")).
+				withId("test").
+				withNegativeCache(new NegativeCache(dir.resolve("missing"))).
+				withSnapshotCache(new SnapshotCache(dir.resolve("snapshots"))).
+				build();
+		
+		partial = dir.resolve("a-1.0.jar.partial");
+		validator = dir.resolve("a-1.0.jar.partial.validator");
+	}
+	
+	@AfterEach
+	void stop() {
+		server.stop(0);
+	}
+
+	@Test
+	void testDownload() throws IOException {
+		var download = download();
+		
+		assertEquals(content.length, download.download());
+		assertArrayEquals(content, Files.readAllBytes(partial));
+		assertEquals(published, download.sha256());
+		assertEquals(Arrays.asList((String)null), ranges);
+		assertFalse(Files.exists(validator));
+	}
+
+	@Test
+	void testResumesFromPartialFile() throws IOException {
+		Files.write(partial, Arrays.copyOf(content, 1000));
+		Files.writeString(validator, ETAG);
+		var download = download();
+		
+		assertEquals(content.length - 1000, download.download());
+		assertArrayEquals(content, Files.readAllBytes(partial));
+		assertEquals(published, download.sha256());
+		assertEquals(List.of("bytes=1000-"), ranges);
+		assertFalse(Files.exists(validator));
+	}
+
+	@Test
+	void testStartsAgainWhenArtifactChanged() throws IOException {
+		Files.write(partial, new byte[1000]);
+		Files.writeString(validator, "\"v0\"");
+		var download = download();
+		
+		assertEquals(content.length, download.download());
+		assertArrayEquals(content, Files.readAllBytes(partial));
+		assertEquals(List.of("bytes=1000-"), ranges);
+	}
+
+	@Test
+	void testStartsAgainWhenRangeNotSatisfiable() throws IOException {
+		Files.write(partial, new byte[content.length + 100]);
+		Files.writeString(validator, ETAG);
+		var download = download();
+		
+		assertEquals(content.length, download.download());
+		assertArrayEquals(content, Files.readAllBytes(partial));
+		assertEquals(Arrays.asList("bytes=" + (content.length + 100) + "-", null), ranges);
+	}
+
+	@Test
+	void testChecksumMismatch() throws IOException {
+		Files.write(partial, Arrays.copyOf(content, 1000));
+		Files.writeString(validator, ETAG);
+		published = "0".repeat(64);
+		
+		assertThrows(ChecksumMismatch.class, download()::download);
+		assertFalse(Files.exists(partial));
+		assertFalse(Files.exists(validator));
+	}
+	
+	private ResumableDownload download() {
+		var uri = URI.create("http://localhost:" + server.getAddress().getPort() + PATH);
+		return new ResumableDownload(repository, httpClientFactory, ARTIFACT, uri, ResolutionResult.of(uri), Optional.empty(), partial);
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try(exchange) {
+			var path = exchange.getRequestURI().getPath();
+			if(path.equals(PATH + ".sha256")) {
+				send(exchange, 200, published.getBytes(StandardCharsets.US_ASCII));
+			}
+			else if(path.equals(PATH)) {
+				var range = exchange.getRequestHeaders().getFirst("Range");
+				ranges.add(range);
+				exchange.getResponseHeaders().add("ETag", ETAG);
+				if(range != null && ETAG.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+					var start = Integer.parseInt(range.substring(6, range.length() - 1));
+					if(start >= content.length) {
+						exchange.getResponseHeaders().add("Content-Range", "bytes */" + content.length);
+						exchange.sendResponseHeaders(416, -1);
+					}
+					else {
+						exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+						send(exchange, 206, Arrays.copyOfRange(content, start, content.length));
+					}
+				}
+				else {
+					send(exchange, 200, content);
+				}
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+		}
+	}
+	
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+	
+	private static String sha256(byte[] data) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}